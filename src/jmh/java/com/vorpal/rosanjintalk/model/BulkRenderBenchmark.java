@@ -0,0 +1,83 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Throughput of BulkRenderer as the number of threads grows, reported as stories rendered per second.
+ * With enough work per story, the throughput should scale with the number of threads up to the number of cores.
+ *
+ * Each invocation renders ANSWER_SETS sets of answers against a Fluke whose story is storySize characters
+ * long with 100 substitutions, each referenced ten times.
+ */
+@State(Scope.Benchmark)
+public class BulkRenderBenchmark {
+    private static final int ANSWER_SETS = 1000;
+    private static final int SLOT_COUNT = 100;
+    private static final int DENSITY = 10;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"4096", "65536"})
+    public int storySize;
+
+    @Param({"true", "false"})
+    public boolean ordered;
+
+    private ForkJoinPool pool;
+    private BulkRenderer renderer;
+    private List<SlotTable> answers;
+
+    @Setup
+    public void setup() {
+        final var references = SLOT_COUNT * DENSITY;
+        final var filler = "lorem ipsum ".repeat(Math.max(1, storySize / (references + 1) / 12));
+        final var story = new StringBuilder(storySize + references * 8);
+        for (int i = 0; i < references; ++i)
+            story.append(filler).append('{').append(i % SLOT_COUNT + 1).append('}');
+        story.append(filler);
+
+        final var slots = new int[SLOT_COUNT];
+        final var prompts = new String[SLOT_COUNT];
+        for (int i = 0; i < SLOT_COUNT; ++i) {
+            slots[i] = i + 1;
+            prompts[i] = "Prompt " + (i + 1);
+        }
+        final var fluke = new Fluke("bulk.fluke", "Story {1}", SlotTable.of(slots, prompts), story.toString());
+
+        answers = new ArrayList<>(ANSWER_SETS);
+        for (int set = 0; set < ANSWER_SETS; ++set) {
+            final var values = new String[SLOT_COUNT];
+            for (int i = 0; i < SLOT_COUNT; ++i)
+                values[i] = "answer" + set + "_" + i;
+            answers.add(fluke.inputs().withValues(values));
+        }
+
+        pool = new ForkJoinPool(threads);
+        renderer = new BulkRenderer(fluke, pool, 4 * threads, ordered);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ANSWER_SETS)
+    public void render(final Blackhole blackhole) {
+        renderer.render(answers, blackhole::consume);
+    }
+}
@@ -0,0 +1,134 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmarks for the Fluke model: parsing, serialization, validation, the substitution queries, and rendering.
+ *
+ * The story is generated to roughly storySize characters of filler words, with slotCount distinct substitutions
+ * each referenced density times, spread evenly through the story. If the references alone exceed storySize,
+ * the story is just the references.
+ *
+ * The static methods (isInvalid, allSubstituations, unusedKeys, substitute) compile the text on every call,
+ * whereas substituteStory renders the Template cached on the Fluke, so the two substitute benchmarks show the
+ * cost of a first play against a repeated play. writeStory streams the same render to a discarding Writer, and
+ * with -prof gc shows that its allocation does not grow with the story size.
+ *
+ * Run with ./gradlew jmh. Parameters can be restricted on the command line of the benchmark jar, e.g.
+ * java -jar build/libs/RosanjinTalk-1.0.0-jmh.jar FlukeBenchmark -p storySize=1024 -prof gc
+ */
+@State(Scope.Benchmark)
+public class FlukeBenchmark {
+    private static final String[] WORDS = {
+            "the", "crane", "walked", "across", "a", "pavement", "of", "walnut", "shells", "and", "lovingly",
+            "potatoes", "while", "Rosanjin", "considered", "the", "broth"
+    };
+
+    // Story size in characters: 1 KB, 64 KB, 1 MB, 50 MB.
+    @Param({"1024", "65536", "1048576", "52428800"})
+    public int storySize;
+
+    // The number of distinct substitutions in the story.
+    @Param({"1", "100", "10000"})
+    public int slotCount;
+
+    // The number of times each substitution is referenced in the story.
+    @Param({"1", "10"})
+    public int density;
+
+    private Fluke fluke;
+    private String json;
+    private Set<Integer> inputKeys;
+    private Map<Integer, String> answerMap;
+    private SlotTable answers;
+
+    @Setup
+    public void setup() throws IOException {
+        final var random = new Random(0xF1A4E);
+
+        // Spread the references evenly through the filler text.
+        final var references = slotCount * density;
+        final var fillerPerReference = Math.max(0, (storySize - references * 6) / (references + 1));
+        final var story = new StringBuilder(storySize + references * 8);
+        appendFiller(story, fillerPerReference, random);
+        for (int i = 0; i < references; ++i) {
+            story.append(" {").append(i % slotCount + 1).append("} ");
+            appendFiller(story, fillerPerReference, random);
+        }
+
+        // Include one input that is never used so that unusedKeys has something to find.
+        final var slots = new int[slotCount + 1];
+        final var prompts = new String[slotCount + 1];
+        final var values = new String[slotCount + 1];
+        for (int i = 0; i <= slotCount; ++i) {
+            slots[i] = i + 1;
+            prompts[i] = "Prompt number " + (i + 1);
+            values[i] = WORDS[random.nextInt(WORDS.length)] + i;
+        }
+
+        final var inputs = SlotTable.of(slots, prompts);
+        fluke = new Fluke("benchmark.fluke", "The story of {1}", inputs, story.toString());
+        json = fluke.toJson();
+        inputKeys = inputs.keys().toSet();
+        answers = inputs.withValues(values);
+        answerMap = answers.toMap();
+    }
+
+    private static void appendFiller(final StringBuilder sb, final int length, final Random random) {
+        final var target = sb.length() + length;
+        while (sb.length() < target)
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+
+    @Benchmark
+    public Fluke fromJson() throws IOException {
+        return Fluke.fromJson(json);
+    }
+
+    @Benchmark
+    public String toJson() throws IOException {
+        return fluke.toJson();
+    }
+
+    @Benchmark
+    public boolean isInvalid() {
+        return Fluke.isInvalid(inputKeys, fluke.story());
+    }
+
+    @Benchmark
+    public Set<Integer> allSubstituations() {
+        return Fluke.allSubstituations(fluke.title(), fluke.story());
+    }
+
+    @Benchmark
+    public Set<Integer> unusedKeys() {
+        return Fluke.unusedKeys(inputKeys, fluke.title(), fluke.story());
+    }
+
+    @Benchmark
+    public String substitute() {
+        return Fluke.substitute(answerMap, fluke.story());
+    }
+
+    @Benchmark
+    public String substituteStory() {
+        return fluke.substituteStory(answers);
+    }
+
+    @Benchmark
+    public void writeStory() throws IOException {
+        fluke.writeStory(answers, Writer.nullWriter());
+    }
+}
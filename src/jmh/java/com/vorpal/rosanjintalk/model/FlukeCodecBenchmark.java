@@ -0,0 +1,147 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FlukeJsonCodec against the Jackson databind path that it replaced, which read a Fluke with
+ * ObjectMapper.readValue through its annotated constructor.
+ *
+ * The cold benchmarks measure the first read of a Fluke in a fresh JVM, including initializing the ObjectMapper and
+ * introspecting the class for databind, and loading the JsonFactory and parser classes for both. Nothing is read or
+ * written before then: the JSON is built by hand in setup, which its plain contents allow. They are only meaningful
+ * with a single measurement per fork and no warmup, which the defaults in build.gradle override, so run them from
+ * the benchmark jar, e.g.
+ * java -jar build/libs/RosanjinTalk-1.0.0-jmh.jar 'FlukeCodecBenchmark.cold' -bm ss -wi 0 -i 1 -f 20
+ *
+ * The warm benchmarks measure reads and writes once both paths have been compiled.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlukeCodecBenchmark {
+    // Story size in characters: 1 KB and 1 MB.
+    @Param({"1024", "1048576"})
+    public int storySize;
+
+    private static final int SLOT_COUNT = 100;
+
+    private byte[] json;
+
+    /**
+     * The shape of a Fluke in JSON, for databind to bind to.
+     */
+    public record JsonFluke(String filename, String title, Map<Integer, String> inputs, String story) {
+    }
+
+    /**
+     * Holds the ObjectMapper, so that it is not created until the first databind benchmark runs.
+     */
+    private static final class Databind {
+        static final ObjectMapper MAPPER = new ObjectMapper().configure(SerializationFeature.INDENT_OUTPUT, true);
+    }
+
+    @Setup
+    public void setup() {
+        final var text = new StringBuilder(storySize + 256);
+        text.append("{\n  \"filename\" : \"benchmark.fluke\",\n  \"title\" : \"The story of {1}\",\n  \"inputs\" : {");
+        for (int i = 1; i <= SLOT_COUNT; ++i)
+            text.append(i == 1 ? "\n" : ",\n").append("    \"").append(i).append("\" : \"Prompt number ").append(i)
+                    .append('"');
+        text.append("\n  },\n  \"story\" : \"");
+
+        final var storyStart = text.length();
+        for (int i = 0; text.length() - storyStart < storySize; ++i)
+            text.append("lorem ipsum {").append(i % SLOT_COUNT + 1).append("} dolor sit amet ");
+        text.append("\"\n}");
+        json = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Fluke databindRead() throws IOException {
+        final var read = Databind.MAPPER.readValue(new ByteArrayInputStream(json), JsonFluke.class);
+        return new Fluke(read.filename(), read.title(), read.inputs(), read.story());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public Fluke coldCodec() throws IOException {
+        return FlukeJsonCodec.decode(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public Fluke coldDatabind() throws IOException {
+        return databindRead();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Fluke warmCodec() throws IOException {
+        return FlukeJsonCodec.decode(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Fluke warmDatabind() throws IOException {
+        return databindRead();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void warmCodecWrite(final WriteState state) throws IOException {
+        FlukeJsonCodec.encode(state.fluke, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void warmDatabindWrite(final WriteState state) throws IOException {
+        Databind.MAPPER.writeValue(OutputStream.nullOutputStream(), state.jsonFluke);
+    }
+
+    /**
+     * The Fluke to write, which is only parsed for the write benchmarks so that the cold ones stay cold.
+     */
+    @State(Scope.Benchmark)
+    public static class WriteState {
+        private Fluke fluke;
+        private JsonFluke jsonFluke;
+
+        @Setup
+        public void setup(final FlukeCodecBenchmark benchmark) throws IOException {
+            fluke = FlukeJsonCodec.decode(new ByteArrayInputStream(benchmark.json));
+            jsonFluke = new JsonFluke(fluke.filename(), fluke.title(), fluke.inputs().toMap(), fluke.story());
+
+            // Check that both paths write the same JSON, so that they are doing the same work.
+            final var codec = new ByteArrayOutputStream();
+            FlukeJsonCodec.encode(fluke, codec);
+            if (!codec.toString(StandardCharsets.UTF_8).equals(Databind.MAPPER.writeValueAsString(jsonFluke)))
+                throw new IllegalStateException("FlukeJsonCodec and databind wrote different JSON.");
+        }
+    }
+}
@@ -138,7 +138,10 @@ public final class RosanjinTalk extends Application {
         return true;
     }
 
+    /**
+     * Run through RosanjinTalkLauncher so that the command line modes do not start JavaFX.
+     */
     public static void main(final String[] args) {
-        launch(args);
+        RosanjinTalkLauncher.main(args);
     }
 }
@@ -0,0 +1,30 @@
+package com.vorpal.rosanjintalk;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.cli.PackCommand;
+import com.vorpal.rosanjintalk.cli.RenderCommand;
+import javafx.application.Application;
+
+import java.util.Arrays;
+
+/**
+ * The entry point of the application.
+ *
+ * This is deliberately not a subclass of Application: when the main class is an Application, the Java launcher
+ * starts the JavaFX toolkit before main is even called. Keeping the entry point separate lets the command line
+ * modes run headless, and only launches RosanjinTalk when no command is given.
+ */
+public final class RosanjinTalkLauncher {
+    private RosanjinTalkLauncher() {
+    }
+
+    public static void main(final String[] args) {
+        if (args.length > 0 && args[0].equals(RenderCommand.NAME))
+            System.exit(RenderCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+        if (args.length > 0 && (args[0].equals(PackCommand.PACK) || args[0].equals(PackCommand.UNPACK)))
+            System.exit(PackCommand.run(args[0], Arrays.copyOfRange(args, 1, args.length)));
+
+        Application.launch(RosanjinTalk.class, args);
+    }
+}
@@ -0,0 +1,136 @@
+package com.vorpal.rosanjintalk.cli;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.model.FlukePack;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+
+/**
+ * The headless tools to pack the Fluke files in a directory into a FlukePack, and to unpack a FlukePack into files:
+ *
+ * RosanjinTalk pack --dir flukes --out library.flukepack
+ * RosanjinTalk unpack --pack library.flukepack --dir flukes
+ *
+ * Packing reads and validates every .fluke file in the directory, in any format, and stores it in the binary format.
+ * The files themselves are left in place: once the pack is in the flukes directory, they can be removed, and any that
+ * are kept take precedence over their packed copies. Unpacking writes each packed Fluke to a file of the same name,
+ * and never overwrites an existing file.
+ *
+ * Errors are reported on standard error and through the exit code, as for RenderCommand.
+ */
+public final class PackCommand {
+    public static final String PACK = "pack";
+    public static final String UNPACK = "unpack";
+
+    public static final int EXIT_CANT_CREATE = 73;
+
+    private static final String USAGE =
+            "Usage: RosanjinTalk pack --dir <directory> --out <file" + FlukePack.PACK_EXTENSION + ">\n" +
+            "       RosanjinTalk unpack --pack <file" + FlukePack.PACK_EXTENSION + "> --dir <directory>";
+
+    private PackCommand() {
+    }
+
+    /**
+     * Run the pack or unpack command.
+     * @param command PACK or UNPACK
+     * @param args    the arguments after the command name
+     * @return the exit code
+     */
+    public static int run(final String command, final String[] args) {
+        return run(command, args, System.err);
+    }
+
+    static int run(final String command, final String[] args, final PrintStream err) {
+        String dirArg = null;
+        String packArg = null;
+        for (int i = 0; i < args.length; ++i) {
+            final var option = args[i];
+            if (i + 1 == args.length) {
+                err.println("Missing value for " + option + "\n" + USAGE);
+                return RenderCommand.EXIT_USAGE;
+            }
+            final var value = args[++i];
+            switch (option) {
+                case "--dir" -> dirArg = value;
+                case "--out", "--pack" -> packArg = value;
+                default -> {
+                    err.println("Unknown option: " + option + "\n" + USAGE);
+                    return RenderCommand.EXIT_USAGE;
+                }
+            }
+        }
+        if (dirArg == null || packArg == null) {
+            err.println(USAGE);
+            return RenderCommand.EXIT_USAGE;
+        }
+
+        final var directory = Path.of(dirArg);
+        final var pack = Path.of(packArg);
+        return command.equals(UNPACK) ? unpack(pack, directory, err) : pack(directory, pack, err);
+    }
+
+    private static int pack(final Path directory, final Path pack, final PrintStream err) {
+        final var files = new TreeMap<String, Path>();
+        try (final var stream = Files.newDirectoryStream(directory, "*.fluke")) {
+            for (final var path : stream)
+                if (Files.isRegularFile(path))
+                    files.put(path.getFileName().toString(), path);
+        } catch (final IOException e) {
+            err.println("Could not list directory " + directory + ": " + e.getMessage());
+            return RenderCommand.EXIT_NO_INPUT;
+        }
+
+        try {
+            FlukePack.write(pack, files);
+        } catch (final IOException e) {
+            err.println("Could not write pack " + pack + ": " + e.getMessage());
+            return RenderCommand.EXIT_IO_ERROR;
+        }
+        err.println("Packed " + files.size() + " Flukes into " + pack);
+        return RenderCommand.EXIT_OK;
+    }
+
+    private static int unpack(final Path pack, final Path directory, final PrintStream err) {
+        final FlukePack flukePack;
+        try {
+            flukePack = FlukePack.open(pack);
+        } catch (final IOException e) {
+            err.println("Could not read pack " + pack + ": " + e.getMessage());
+            return RenderCommand.EXIT_NO_INPUT;
+        }
+
+        final var base = directory.toAbsolutePath().normalize();
+        for (int i = 0; i < flukePack.count(); ++i) {
+            final var name = flukePack.name(i);
+            // The names come from the pack, so they must not reach outside the directory.
+            final var target = base.resolve(name).normalize();
+            if (!base.equals(target.getParent()) || !name.endsWith(".fluke")) {
+                err.println("Invalid name in pack: " + name);
+                return RenderCommand.EXIT_DATA_ERROR;
+            }
+
+            try (final var channel = Files.newByteChannel(target,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                final var data = flukePack.data(i);
+                while (data.hasRemaining())
+                    channel.write(data);
+            } catch (final FileAlreadyExistsException e) {
+                err.println("Not overwriting existing file " + target);
+                return EXIT_CANT_CREATE;
+            } catch (final IOException e) {
+                err.println("Could not write " + target + ": " + e.getMessage());
+                return RenderCommand.EXIT_IO_ERROR;
+            }
+        }
+        err.println("Unpacked " + flukePack.count() + " Flukes into " + directory);
+        return RenderCommand.EXIT_OK;
+    }
+}
@@ -0,0 +1,323 @@
+package com.vorpal.rosanjintalk.cli;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.vorpal.rosanjintalk.model.BulkRenderer;
+import com.vorpal.rosanjintalk.model.Fluke;
+import com.vorpal.rosanjintalk.model.RenderedStory;
+import com.vorpal.rosanjintalk.model.SlotTable;
+import com.vorpal.rosanjintalk.model.WordFilter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The headless batch renderer, which renders a Fluke against many sets of answers without starting JavaFX:
+ *
+ * RosanjinTalk render --fluke x.fluke --answers answers.jsonl --out stories.jsonl
+ *
+ * Each line of the answers file is a JSON object from substitution index to answer, e.g. {"1": "crane", "2": "walnut"},
+ * and each line of the output is a JSON object {"title": ..., "story": ...} for the corresponding line of answers.
+ * Blank lines are skipped. Either file may be given as - to use standard input or output.
+ *
+ * The sets of answers are rendered in parallel by a BulkRenderer over --threads threads (by default, one per core),
+ * and the stories are written in the order of the answers. An answer that contains a term in the blocklist of the
+ * Fluke's directory (see WordFilter) is reported as an error, as it would be when playing.
+ *
+ * The files are streamed a line at a time, so memory use does not depend on their length.
+ * Errors are reported on standard error and through the exit code, using the values from sysexits.h.
+ */
+public final class RenderCommand {
+    public static final String NAME = "render";
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_USAGE = 64;
+    public static final int EXIT_DATA_ERROR = 65;
+    public static final int EXIT_NO_INPUT = 66;
+    public static final int EXIT_IO_ERROR = 74;
+
+    private static final String STDIO = "-";
+
+    // The most threads that a ForkJoinPool allows.
+    private static final int MAX_THREADS = 0x7fff;
+
+    private static final String USAGE =
+            "Usage: RosanjinTalk render --fluke <file.fluke> [--answers <answers.jsonl>] [--out <stories.jsonl>]\n" +
+            "                           [--threads <n>]\n" +
+            "  --answers defaults to standard input and --out defaults to standard output.\n" +
+            "  --threads defaults to the number of processors, and is at most " + MAX_THREADS + ".";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private RenderCommand() {
+    }
+
+    /**
+     * Thrown to abandon the render with an exit code.
+     * This is unchecked so that it can be thrown while the BulkRenderer is pulling answers.
+     */
+    private static final class RenderException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int exitCode;
+
+        RenderException(final int exitCode, final String message) {
+            super(message);
+            this.exitCode = exitCode;
+        }
+    }
+
+    /**
+     * Run the render command.
+     * @param args the arguments after the command name
+     * @return the exit code
+     */
+    public static int run(final String[] args) {
+        return run(args, System.err);
+    }
+
+    static int run(final String[] args, final PrintStream err) {
+        String flukeArg = null;
+        String answersArg = STDIO;
+        String outArg = STDIO;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; ++i) {
+            final var option = args[i];
+            if (i + 1 == args.length) {
+                err.println("Missing value for " + option + "\n" + USAGE);
+                return EXIT_USAGE;
+            }
+            final var value = args[++i];
+            switch (option) {
+                case "--fluke" -> flukeArg = value;
+                case "--answers" -> answersArg = value;
+                case "--out" -> outArg = value;
+                case "--threads" -> {
+                    try {
+                        threads = Integer.parseInt(value);
+                    } catch (final NumberFormatException e) {
+                        threads = 0;
+                    }
+                    if (threads < 1 || threads > MAX_THREADS) {
+                        err.println("Invalid number of threads: " + value + "\n" + USAGE);
+                        return EXIT_USAGE;
+                    }
+                }
+                default -> {
+                    err.println("Unknown option: " + option + "\n" + USAGE);
+                    return EXIT_USAGE;
+                }
+            }
+        }
+        if (flukeArg == null) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        final var flukePath = Path.of(flukeArg);
+        final Fluke fluke;
+        try {
+            fluke = Fluke.read(flukePath);
+        } catch (final JsonProcessingException e) {
+            err.println("Could not parse Fluke " + flukeArg + ": " + e.getOriginalMessage());
+            return EXIT_DATA_ERROR;
+        } catch (final IOException e) {
+            err.println("Could not read Fluke " + flukeArg + ": " + e);
+            return EXIT_NO_INPUT;
+        }
+
+        final WordFilter filter;
+        final var directory = flukePath.toAbsolutePath().getParent();
+        try {
+            filter = WordFilter.load(directory);
+        } catch (final IOException e) {
+            err.println("Could not read blocklist in " + directory + ": " + e.getMessage());
+            return EXIT_NO_INPUT;
+        }
+
+        try (final var reader = openReader(answersArg);
+             final var writer = openWriter(outArg)) {
+            render(fluke, filter, threads, reader, writer);
+            return EXIT_OK;
+        } catch (final RenderException e) {
+            err.println(e.getMessage());
+            return e.exitCode;
+        } catch (final IOException e) {
+            err.println("I/O error: " + e.getMessage());
+            return EXIT_IO_ERROR;
+        }
+    }
+
+    private static BufferedReader openReader(final String arg) throws RenderException {
+        if (STDIO.equals(arg))
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            return Files.newBufferedReader(Path.of(arg), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new RenderException(EXIT_NO_INPUT, "Could not read answers " + arg + ": " + e.getMessage());
+        }
+    }
+
+    private static Writer openWriter(final String arg) throws RenderException {
+        if (STDIO.equals(arg))
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            return Files.newBufferedWriter(Path.of(arg), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            throw new RenderException(EXIT_IO_ERROR, "Could not write stories " + arg + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Render each line of answers from the reader and write the stories to the writer, one per line.
+     */
+    private static void render(final Fluke fluke,
+                               final WordFilter filter,
+                               final int threads,
+                               final BufferedReader reader,
+                               final Writer writer) throws IOException {
+        // The line numbers of the answers that have been read but whose stories have not been written.
+        // The stories are written in order, so the head is the line of the next story, or of a failure.
+        final Queue<Long> lineNumbers = new ArrayDeque<>();
+
+        final var pool = new ForkJoinPool(threads);
+        try (final var generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            final var answers = new AnswersIterator(fluke.inputs(), reader, lineNumbers);
+            final var renderer = new BulkRenderer(fluke, pool, 4 * threads, true, filter);
+
+            renderer.render(answers, story -> {
+                lineNumbers.remove();
+                write(generator, story);
+            });
+        } catch (final BulkRenderer.RenderFailure e) {
+            // The failed render is the next one in order, so its line is at the head of the queue.
+            throw new RenderException(EXIT_DATA_ERROR, "Line " + lineNumbers.peek() + ": " + e.getCause().getMessage());
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void write(final JsonGenerator generator, final RenderedStory story) {
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("title", story.title());
+            generator.writeStringField("story", story.story());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the non-blank lines of answers one at a time as the BulkRenderer asks for them,
+     * recording the line number of each.
+     */
+    private static final class AnswersIterator implements Iterator<SlotTable> {
+        private final SlotTable inputs;
+        private final BufferedReader reader;
+        private final Queue<Long> lineNumbers;
+        private long lineNumber = 0;
+        private String line;
+
+        AnswersIterator(final SlotTable inputs,
+                        final BufferedReader reader,
+                        final Queue<Long> lineNumbers) {
+            this.inputs = inputs;
+            this.reader = reader;
+            this.lineNumbers = lineNumbers;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (line == null) {
+                    final var next = reader.readLine();
+                    if (next == null)
+                        return false;
+                    ++lineNumber;
+                    if (!next.isBlank())
+                        line = next;
+                }
+                return true;
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public SlotTable next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            try {
+                final var answers = parseAnswers(inputs, line, lineNumber);
+                lineNumbers.add(lineNumber);
+                line = null;
+                return answers;
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Parse one line of answers into a table sharing the keys of the Fluke's inputs.
+     */
+    private static SlotTable parseAnswers(final SlotTable inputs,
+                                          final String line,
+                                          final long lineNumber) throws IOException, RenderException {
+        final var answers = new String[inputs.size()];
+        try (final JsonParser parser = JSON_FACTORY.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new RenderException(EXIT_DATA_ERROR, "Line " + lineNumber + ": expected a JSON object.");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final var name = parser.getCurrentName();
+                final int ordinal;
+                try {
+                    ordinal = inputs.ordinalOf(Integer.parseInt(name));
+                } catch (final NumberFormatException e) {
+                    throw new RenderException(EXIT_DATA_ERROR, "Line " + lineNumber + ": invalid substitution " + name);
+                }
+                if (ordinal < 0)
+                    throw new RenderException(EXIT_DATA_ERROR, "Line " + lineNumber + ": unknown substitution " + name);
+                if (parser.nextToken() != JsonToken.VALUE_STRING)
+                    throw new RenderException(EXIT_DATA_ERROR, "Line " + lineNumber + ": answer for " + name +
+                            " is not a string.");
+                answers[ordinal] = parser.getText();
+            }
+        } catch (final JsonProcessingException e) {
+            throw new RenderException(EXIT_DATA_ERROR, "Line " + lineNumber + ": " + e.getOriginalMessage());
+        }
+
+        for (int ordinal = 0; ordinal < answers.length; ++ordinal)
+            if (answers[ordinal] == null)
+                throw new RenderException(EXIT_DATA_ERROR, "Line " + lineNumber + ": missing answer for substitution " +
+                        inputs.slot(ordinal));
+        return inputs.withValues(answers);
+    }
+}
@@ -0,0 +1,154 @@
+package com.vorpal.rosanjintalk.controller;
+
+// By Sebastian Raaphorst, 2023.
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ObservableValue;
+import javafx.beans.value.ObservableValueBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A graph of values derived from the state of a screen, e.g. whether the inputs are complete, to which the controls
+ * that depend on them, e.g. the buttons, are bound.
+ *
+ * The inputs of a derived value are ordinary observable values, such as the text of a field or a property that a
+ * controller sets, or other derived values of the same graph. When an input changes, the derived value is only marked
+ * as stale, and all the stale values are recomputed together once per pulse, just before the scene is laid out.
+ * So any number of changes between two pulses cost one recomputation of each value that depends on them, and values
+ * that do not depend on them are not recomputed at all. A derived value is only reported as changed if it is no
+ * longer equal to what it was. Reading a stale value recomputes the graph at once, so the value read is always
+ * current, e.g. in the handler of a button.
+ *
+ * Derived values can only depend on values that were derived before them, so the order in which they were derived
+ * is an order in which they can be recomputed. Everything is expected to happen on the JavaFX application thread.
+ */
+public final class StateGraph {
+    private final List<Derived<?>> nodes = new ArrayList<>();
+
+    // Whether any derived value is stale, and whether the graph is being recomputed.
+    private boolean stale;
+    private boolean recomputing;
+
+    // Runs once on the next pulse to recompute the stale values.
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(final long now) {
+            stop();
+            update();
+        }
+    };
+
+    /**
+     * Derive a value from some inputs. The value is first computed on the first pulse or when it is first read.
+     * @param compute the calculation of the value, which should only read the given inputs
+     * @param inputs  the values that the calculation depends on
+     * @param <T>     the type of the value
+     * @return the derived value
+     */
+    public <T> Derived<T> derive(final Supplier<T> compute, final ObservableValue<?>... inputs) {
+        final var node = new Derived<>(compute, inputs);
+        for (final var input : inputs) {
+            if (input instanceof Derived<?> derived && derived.graph() == this)
+                derived.dependents.add(node);
+            else
+                input.addListener(node.listener);
+        }
+        nodes.add(node);
+        markStale(node);
+        return node;
+    }
+
+    private void markStale(final Derived<?> node) {
+        node.stale = true;
+        if (!stale) {
+            stale = true;
+            pulse.start();
+        }
+    }
+
+    /**
+     * Recompute the stale values in order, and then report the ones that changed. Changes that are made while they
+     * are being reported are recomputed on the next pulse.
+     */
+    private void update() {
+        if (!stale || recomputing)
+            return;
+        recomputing = true;
+        stale = false;
+        pulse.stop();
+
+        final var changed = new ArrayList<Derived<?>>();
+        try {
+            for (final var node : nodes)
+                if (node.stale && node.refresh()) {
+                    changed.add(node);
+                    for (final var dependent : node.dependents)
+                        dependent.stale = true;
+                }
+        } finally {
+            recomputing = false;
+        }
+        changed.forEach(Derived::changed);
+    }
+
+    /**
+     * A value in the graph. It can be bound to and listened to like any other observable value.
+     * @param <T> the type of the value
+     */
+    public final class Derived<T> extends ObservableValueBase<T> {
+        private final Supplier<T> compute;
+        private final ObservableValue<?>[] inputs;
+        private final List<Derived<?>> dependents = new ArrayList<>();
+        private final InvalidationListener listener = observable -> markStale(this);
+
+        private T value;
+        private boolean stale;
+
+        private Derived(final Supplier<T> compute, final ObservableValue<?>[] inputs) {
+            this.compute = Objects.requireNonNull(compute);
+            this.inputs = inputs.clone();
+        }
+
+        private StateGraph graph() {
+            return StateGraph.this;
+        }
+
+        /**
+         * Compute the value again.
+         * @return true if it changed, and false otherwise
+         */
+        private boolean refresh() {
+            stale = false;
+
+            // An observable value only reports that it is invalid once until it is read again, so read every input
+            // in case the calculation does not.
+            for (final var input : inputs)
+                input.getValue();
+
+            final var newValue = compute.get();
+            if (Objects.equals(value, newValue))
+                return false;
+            value = newValue;
+            return true;
+        }
+
+        private void changed() {
+            fireValueChangedEvent();
+        }
+
+        /**
+         * The current value, which is recomputed first if any value in the graph is stale.
+         * @return the value
+         */
+        @Override
+        public T getValue() {
+            update();
+            return value;
+        }
+    }
+}
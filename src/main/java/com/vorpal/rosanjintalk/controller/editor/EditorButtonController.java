@@ -19,31 +19,14 @@ public final class EditorButtonController implements Controller<EditorButtonView
         view.addButton.setOnAction(e -> editorController.editorInputsController.addRow());
         view.deleteButton.setOnAction(e -> editorController.editorInputsController.deleteRows());
         view.saveButton.setOnAction(e -> editorController.saveFluke());
-        configureSaveButtonState();
-        configureDeleteButtonState();
+
+        // The buttons are enabled according to the state derived from the other panels.
+        view.saveButton.disableProperty().bind(editorController.state.saveDisabled);
+        view.deleteButton.disableProperty().bind(editorController.state.deleteDisabled);
     }
 
     @Override
     public EditorButtonView getView() {
         return view;
     }
-
-    /**
-     * Configure the state of the buttons in this panel depending on the other panels.
-     */
-    void configureSaveButtonState() {
-        view.saveButton.setDisable(editorController.editorInputsController.isIncomplete() ||
-                editorController.editorStoryController.isIncomplete() ||
-                !editorController.isModified()
-        );
-    }
-
-    /**
-     * Configure the state of the delete button in this panel depending on the InputsController.
-     */
-    void configureDeleteButtonState() {
-        view.deleteButton.setDisable(
-                editorController.editorInputsController.getCheckboxesTicked() == 0
-        );
-    }
 }
@@ -5,12 +5,11 @@ package com.vorpal.rosanjintalk.controller.editor;
 import com.vorpal.rosanjintalk.controller.Controller;
 import com.vorpal.rosanjintalk.model.Fluke;
 import com.vorpal.rosanjintalk.shared.Shared;
-import com.vorpal.rosanjintalk.view.editor.EditorRowView;
+import com.vorpal.rosanjintalk.view.editor.EditorRow;
 import com.vorpal.rosanjintalk.view.shared.TopView;
 import javafx.stage.Stage;
 
 import java.nio.file.Path;
-import java.util.HashSet;
 import java.util.Objects;
 
 /**
@@ -22,21 +21,19 @@ public final class EditorController implements Controller<TopView> {
     final EditorInputsController editorInputsController;
     final EditorButtonController editorButtonController;
     final EditorStoryController editorStoryController;
+    final EditorState state;
     final Path flukePath;
 
     // The filename must be mutable so that if a new Fluke is created,
     // the user is prompted once for a filename. Otherwise, the old file is overwritten.
     private String filename;
 
-    // Determine if any modifications have been made.
-    private boolean modified;
-
     public EditorController(final Stage stage,
                             final Fluke fluke) {
         this.stage = stage;
 
         // Reset the indices so when editing a new Fluke file, we begin the substitutions at 1.
-        EditorRowView.resetIndex();
+        EditorRow.resetIndex();
 
         editorInputsController = new EditorInputsController(this, fluke);
         editorButtonController = new EditorButtonController(this);
@@ -46,9 +43,9 @@ public final class EditorController implements Controller<TopView> {
                 editorButtonController.getView(),
                 editorStoryController.getView()
         );
+        state = new EditorState(this);
         flukePath = Objects.requireNonNull(Shared.getFlukePath());
         filename = fluke == null ? null : fluke.filename();
-        modified = false;
     }
 
     @Override
@@ -75,23 +72,30 @@ public final class EditorController implements Controller<TopView> {
         // TODO: Now we should not have to do this because blank prompts disable the save button.
         // Check to make sure the substitutions are correct.
         final var inputs = editorInputsController.getInputs();
-        final var substitutions = editorStoryController.getSubstitutions();
 
-        // If we are missing inputs that are used in the story, alert and abort.
-        if (!inputs.keySet().containsAll(substitutions)) {
-            substitutions.removeAll(inputs.keySet());
+        if (!state.valid.getValue()) {
+            // If a substitution number is too large to be used, alert and abort.
+            if (state.overflow.get()) {
+                final var titleOverflow = editorStoryController.getTitleTemplate().overflow();
+                final var overflow = titleOverflow != null ?
+                        titleOverflow :
+                        editorStoryController.getStoryTemplate().overflow();
+                Shared.recoverableError("The substitution number is too large:\n\n" + overflow);
+                return;
+            }
+
+            // Otherwise, we are missing inputs that are used in the story, so alert and abort.
             Shared.recoverableError("There are undefined substitutions used in the story:\n\n" +
-                    Shared.promptIndexSetToString(substitutions)
+                    Shared.promptIndexSetToString(state.undefined.getValue().toSet())
             );
             return;
         }
 
         // If we have extra inputs that are unneeded, warn and prompt.
-        if (!substitutions.containsAll(inputs.keySet())) {
-            final var keySet = new HashSet<>(inputs.keySet());
-            keySet.removeAll(substitutions);
+        final var unused = state.unused.getValue();
+        if (!unused.isEmpty()) {
             final var response = Shared.confirmationRequest("There are extra substitutions defined:\n\n" +
-                    Shared.promptIndexSetToString(keySet) +
+                    Shared.promptIndexSetToString(unused.toSet()) +
                     "\n\nSave anyways?");
             if (!response)
                 return;
@@ -113,7 +117,12 @@ public final class EditorController implements Controller<TopView> {
             filename = file.getName();
         }
 
-        new Fluke(filename, editorStoryController.getTitle(), inputs, editorStoryController.getStory()).save();
+        // The compiled title and story are reused if they were compiled to report an overflow above.
+        Fluke.of(filename,
+                editorStoryController.getTitleTemplate().strip(),
+                inputs,
+                editorStoryController.getStoryTemplate().strip()
+        ).save();
         markUnmodified();
 
         // The focus shifts to the title since the save button is focused and ends up disabled
@@ -125,16 +134,14 @@ public final class EditorController implements Controller<TopView> {
      * Mark the edited Fluke as being modified.
      */
     void markModified() {
-        modified = true;
-        editorButtonController.configureSaveButtonState();
+        state.modified.set(true);
     }
 
     /**
      * Mark the edited Fluke as being unmodified.
      */
     void markUnmodified() {
-        modified = false;
-        editorButtonController.configureSaveButtonState();
+        state.modified.set(false);
     }
 
     /**
@@ -142,6 +149,6 @@ public final class EditorController implements Controller<TopView> {
      * @return modified status of Fluke
      */
     public boolean isModified() {
-        return modified;
+        return state.modified.get();
     }
 }
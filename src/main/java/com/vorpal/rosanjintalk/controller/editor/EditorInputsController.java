@@ -4,52 +4,54 @@ package com.vorpal.rosanjintalk.controller.editor;
 
 import com.vorpal.rosanjintalk.controller.Controller;
 import com.vorpal.rosanjintalk.model.Fluke;
-import com.vorpal.rosanjintalk.view.editor.EditorRowView;
+import com.vorpal.rosanjintalk.model.SlotSet;
+import com.vorpal.rosanjintalk.model.SlotTable;
 import com.vorpal.rosanjintalk.view.editor.EditorInputsView;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
+import com.vorpal.rosanjintalk.view.editor.EditorRow;
+import com.vorpal.rosanjintalk.view.editor.EditorRowCell;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public final class EditorInputsController implements Controller<EditorInputsView> {
     private final EditorInputsView view;
-    private final List<EditorRowView> rows;
+    private final List<EditorRow> rows;
     private final EditorController editorController;
 
-    // Checkbox action for rows to determine if the delete button should be available.
-    private final EventHandler<ActionEvent> cbEventHandler;
+    // The number of rows with a blank prompt and with a ticked checkbox, kept up to date as the rows change.
+    private int blankPrompts;
+    private int checkedRows;
 
     public EditorInputsController(final EditorController editorController,
                                   final Fluke fluke) {
         view = new EditorInputsView();
-        rows = new ArrayList<>();
+        rows = view.rows;
         this.editorController = editorController;
-        cbEventHandler = (final ActionEvent e) -> editorController.editorButtonController.configureDeleteButtonState();
 
         // If fluke is not null, set the initial rows.
-        if (fluke != null)
-            fluke.inputs().forEach((idx, prompt) ->
-                    rows.add(new EditorRowView(idx, prompt))
-            );
+        // The inputs are in ascending order of substitution index, so the rows do not need to be sorted.
+        if (fluke != null) {
+            final var inputs = fluke.inputs();
+            final var initialRows = new ArrayList<EditorRow>(inputs.size());
+            for (int ordinal = 0; ordinal < inputs.size(); ++ordinal) {
+                final var row = new EditorRow(inputs.slot(ordinal), inputs.value(ordinal));
+                if (row.getPrompt().isBlank())
+                    ++blankPrompts;
+                initialRows.add(row);
+            }
+            view.rows.setAll(initialRows);
+        }
     }
 
     @Override
     public void configure() {
-        // If the set of rows is non-empty, then row data was passed in by the Fluke.
-        // The rows have been created, but not configured, so call configureRow on each.
-        if (!rows.isEmpty()) {
-            rows.sort(Comparator.comparingInt(o -> o.idx));
-            rows.forEach(this::configureRow);
-        }
+        view.rowList.setCellFactory(list -> new EditorRowCell(this::promptEdited, this::checkboxEdited));
 
-        // Otherwise, just insert one empty row to give the user an indication on how to work.
-        // Note that addRow adds an empty row and calls configureRow on it.
-        else
+        // If the set of rows is empty, just insert one empty row to give the user an indication on how to work.
+        if (rows.isEmpty())
             addRow();
+        updateDefined();
+        updateCounts();
     }
 
     @Override
@@ -61,48 +63,78 @@ public final class EditorInputsController implements Controller<EditorInputsView
      * Add a new empty row.
      */
     public void addRow() {
-        final var row = new EditorRowView();
+        final var row = new EditorRow();
         rows.add(row);
-        configureRow(row);
+        view.rowList.scrollTo(row);
+        ++blankPrompts;
+        updateDefined();
+        updateCounts();
         editorController.markModified();
     }
 
     /**
-     * Common method to configure an EditRowView with the proper handlers and it to the view.
-     * Calls the EditorButtonController.configureSaveButton method to determine if saving should
-     *   be allowed.
-     * @param rowView the EditRowView to configure
+     * Called by a cell when the prompt of its row is edited.
+     * Only a change between blank and not blank affects the count of blank prompts.
+     * @param row      the row that was edited
+     * @param previous the prompt before the edit
      */
-    private void configureRow(final EditorRowView rowView) {
-        rowView.cb.setOnAction(cbEventHandler);
-        rowView.prompt.textProperty().addListener((observable, oldValue, newValue) -> {
-            editorController.editorButtonController.configureSaveButtonState();
-            editorController.markModified();
-        });
-        view.addRow(view.getRowCount(), rowView.cb, rowView.sub, rowView.prompt);
-
-        // Recalculate the configuration state of the save button based on the contents of the new row.
-        editorController.editorButtonController.configureSaveButtonState();
+    private void promptEdited(final EditorRow row, final String previous) {
+        final var wasBlank = previous.isBlank();
+        final var isBlank = row.getPrompt().isBlank();
+        if (wasBlank != isBlank) {
+            blankPrompts += isBlank ? 1 : -1;
+            updateCounts();
+        }
+        editorController.markModified();
     }
 
     /**
-     * Delete the rows that have their checkboxes checked.
+     * Called by a cell when the checkbox of its row is ticked or unticked.
+     * @param row the row that was edited
      */
-    void deleteRows() {
-        // Get the rows that are checked.
-        final var checkedRows = rows.stream()
-                .filter(row -> row.cb.isSelected())
-                .toList();
+    private void checkboxEdited(final EditorRow row) {
+        checkedRows += row.isChecked() ? 1 : -1;
+        updateCounts();
+    }
+
+    /**
+     * Record the number of blank prompts and ticked checkboxes in the EditorState.
+     */
+    private void updateCounts() {
+        editorController.state.blankPrompts.set(blankPrompts);
+        editorController.state.checkedRows.set(checkedRows);
+    }
 
-        // Remove the rows from the view.
-        checkedRows.forEach(row -> view.getChildren().removeAll(row.cb, row.sub, row.prompt));
+    /**
+     * Record the substitutions that are defined by the rows in the EditorState.
+     */
+    private void updateDefined() {
+        final var slots = new int[rows.size()];
+        for (int i = 0; i < rows.size(); ++i)
+            slots[i] = rows.get(i).idx;
+        editorController.state.defined.set(SlotSet.of(slots));
+    }
 
-        // Remove the rows from the row array.
-        rows.removeAll(checkedRows);
+    /**
+     * Delete the rows that have their checkboxes checked.
+     * The remaining rows are collected in one pass and replace the contents of the list at once.
+     */
+    void deleteRows() {
+        final var remaining = new ArrayList<EditorRow>(rows.size());
+        for (final var row : rows) {
+            if (!row.isChecked())
+                remaining.add(row);
+            else if (row.getPrompt().isBlank())
+                --blankPrompts;
+        }
+        if (remaining.size() == rows.size())
+            return;
+        view.rows.setAll(remaining);
+        checkedRows = 0;
 
-        // Update the button states.
-        editorController.editorButtonController.configureSaveButtonState();
-        editorController.editorButtonController.configureDeleteButtonState();
+        // Update the state that the buttons depend on.
+        updateDefined();
+        updateCounts();
 
         editorController.markModified();
     }
@@ -112,10 +144,8 @@ public final class EditorInputsController implements Controller<EditorInputsView
      * This determines the state of the deleteButton in the EditorButtonController.
      * @return the number of checkboxes ticked
      */
-    long getCheckboxesTicked() {
-        return rows.stream()
-                .filter(r -> r.cb.isSelected())
-                .count();
+    int getCheckboxesTicked() {
+        return checkedRows;
     }
 
     /**
@@ -124,16 +154,20 @@ public final class EditorInputsController implements Controller<EditorInputsView
      * @return true if incomplete (i.e. any of the prompts blank), false otherwise
      */
     boolean isIncomplete() {
-        return rows.stream()
-                .anyMatch(r -> r.prompt.getText().isBlank());
+        return blankPrompts > 0;
     }
 
     /**
      * Retrieve the list of inputs from the component for use in a Fluke file.
-     * @return a Map of index to prompt
+     * @return a SlotTable of substitution index to prompt
      */
-    Map<Integer, String> getInputs() {
-        return rows.stream()
-                .collect(Collectors.toUnmodifiableMap(r -> r.idx, r -> r.prompt.getText()));
+    SlotTable getInputs() {
+        final var slots = new int[rows.size()];
+        final var prompts = new String[rows.size()];
+        for (int i = 0; i < rows.size(); ++i) {
+            slots[i] = rows.get(i).idx;
+            prompts[i] = rows.get(i).getPrompt();
+        }
+        return SlotTable.of(slots, prompts);
     }
 }
@@ -0,0 +1,63 @@
+package com.vorpal.rosanjintalk.controller.editor;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.controller.StateGraph;
+import com.vorpal.rosanjintalk.model.SlotSet;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+/**
+ * The state of the editor that the buttons depend on, derived once per pulse from what the other controllers report.
+ *
+ * The controllers set the sources: whether the Fluke has been modified, the substitutions that are defined and used,
+ * and the number of blank prompts and of ticked checkboxes, which they keep up to date as each row changes.
+ * The rest is derived from them, so none of it depends on the number of rows.
+ */
+final class EditorState {
+    final StateGraph graph = new StateGraph();
+
+    // The sources.
+    final BooleanProperty modified = new SimpleBooleanProperty(false);
+    final IntegerProperty blankPrompts = new SimpleIntegerProperty();
+    final IntegerProperty checkedRows = new SimpleIntegerProperty();
+    final ObjectProperty<SlotSet> defined = new SimpleObjectProperty<>(SlotSet.EMPTY);
+    final ObjectProperty<SlotSet> used = new SimpleObjectProperty<>(SlotSet.EMPTY);
+    final BooleanProperty overflow = new SimpleBooleanProperty(false);
+
+    // Completeness: every prompt, the title, and the story are filled in.
+    final StateGraph.Derived<Boolean> promptsComplete;
+    final StateGraph.Derived<Boolean> storyComplete;
+    final StateGraph.Derived<Boolean> complete;
+
+    // Slot coverage: the substitutions used but not defined, and defined but not used.
+    final StateGraph.Derived<SlotSet> undefined;
+    final StateGraph.Derived<SlotSet> unused;
+
+    // Validity: every substitution used is defined and can be represented.
+    final StateGraph.Derived<Boolean> valid;
+
+    final StateGraph.Derived<Boolean> saveDisabled;
+    final StateGraph.Derived<Boolean> deleteDisabled;
+
+    EditorState(final EditorController editorController) {
+        final var story = editorController.editorStoryController;
+
+        promptsComplete = graph.derive(() -> blankPrompts.get() == 0, blankPrompts);
+        storyComplete = graph.derive(() -> !story.isIncomplete(),
+                story.getView().title.textProperty(), story.getView().story.textProperty());
+        complete = graph.derive(() -> promptsComplete.getValue() && storyComplete.getValue(),
+                promptsComplete, storyComplete);
+
+        undefined = graph.derive(() -> used.get().difference(defined.get()), used, defined);
+        unused = graph.derive(() -> defined.get().difference(used.get()), used, defined);
+        valid = graph.derive(() -> undefined.getValue().isEmpty() && !overflow.get(), undefined, overflow);
+
+        saveDisabled = graph.derive(() -> !complete.getValue() || !modified.get(), complete, modified);
+        deleteDisabled = graph.derive(() -> checkedRows.get() == 0, checkedRows);
+    }
+}
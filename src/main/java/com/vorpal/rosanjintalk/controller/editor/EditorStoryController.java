@@ -4,42 +4,117 @@ package com.vorpal.rosanjintalk.controller.editor;
 
 import com.vorpal.rosanjintalk.controller.Controller;
 import com.vorpal.rosanjintalk.model.Fluke;
+import com.vorpal.rosanjintalk.model.SlotIndex;
+import com.vorpal.rosanjintalk.model.Template;
 import com.vorpal.rosanjintalk.view.shared.StoryView;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
-
-import java.util.Set;
+import javafx.scene.control.TextFormatter;
+import javafx.scene.control.TextInputControl;
 
 public final class EditorStoryController implements Controller<StoryView> {
     private final StoryView view;
     private final EditorController editorController;
 
+    // The most recently compiled title and story, which are reused until the text changes.
+    private Template titleTemplate;
+    private Template storyTemplate;
+
+    // The most recently stripped title and story, which are reused until the text changes.
+    private final StrippedText strippedTitle = new StrippedText();
+    private final StrippedText strippedStory = new StrippedText();
+
+    // The number of references to each substitution in the title and story, which is updated as they are edited.
+    private final SlotIndex slotIndex;
+
     public EditorStoryController(final EditorController editorController,
                                  final Fluke fluke) {
         view = new StoryView();
         this.editorController = editorController;
+        slotIndex = new SlotIndex();
 
         // If the Fluke is not null, then set the text from it.
         // This should probably be done in the configure method, but we don't want to save the Fluke here.
         if (fluke != null) {
             view.title.setText(fluke.title());
             view.story.setText(fluke.story());
+            titleTemplate = fluke.titleTemplate();
+            storyTemplate = fluke.storyTemplate();
         }
     }
 
     @Override
     public void configure() {
-        final var changeListener = new ChangeListener<String>() {
-            @Override
-            public void changed(ObservableValue<? extends String> observable, String oldValue, String newValue) {
-                editorController.editorButtonController.configureSaveButtonState();
-                editorController.markModified();
-            }
-        };
+        slotIndex.add(view.title.getText());
+        slotIndex.add(view.story.getText());
+        updateSubstitutions();
 
-        // Set the handlers to recalculate the state of the save button when typing is recorded.
-        view.title.textProperty().addListener(changeListener);
-        view.story.textProperty().addListener(changeListener);
+        // Keep the substitutions up to date and set the state of the save button when typing is recorded.
+        track(view.title);
+        track(view.story);
+    }
+
+    /**
+     * Apply each edit to a field to the SlotIndex and the EditorState, and mark the Fluke as modified.
+     * @param field the title or story field
+     */
+    private void track(final TextInputControl field) {
+        final var tracker = new EditTracker(field);
+        field.setTextFormatter(new TextFormatter<String>(tracker::record));
+        field.textProperty().addListener(tracker);
+    }
+
+    /**
+     * The TextFormatter of a field sees the range of each edit just before it is made, which the tracker records so
+     * that only that range has to be rescanned when the text changes. If the change does not match the recorded edit,
+     * e.g. because the text was set directly, the old and new text are compared to find the range instead.
+     */
+    private final class EditTracker implements ChangeListener<String> {
+        private final TextInputControl field;
+
+        // The recorded edit, which replaced [start, oldEnd) of text of the given length with inserted.
+        private int length = -1;
+        private int start;
+        private int oldEnd;
+        private String inserted;
+
+        private EditTracker(final TextInputControl field) {
+            this.field = field;
+        }
+
+        private TextFormatter.Change record(final TextFormatter.Change change) {
+            length = field.getLength();
+            start = change.getRangeStart();
+            oldEnd = change.getRangeEnd();
+            inserted = change.getText();
+            return change;
+        }
+
+        @Override
+        public void changed(final ObservableValue<? extends String> observable,
+                            final String oldValue,
+                            final String newValue) {
+            final var newEnd = start + (inserted == null ? 0 : inserted.length());
+            if (oldValue.length() == length &&
+                    newValue.length() - newEnd == length - oldEnd &&
+                    newValue.startsWith(inserted, start))
+                slotIndex.edit(oldValue, newValue, start, oldEnd, newEnd);
+            else
+                slotIndex.change(oldValue, newValue);
+            length = -1;
+            inserted = null;
+            updateSubstitutions();
+            editorController.markModified();
+        }
+    }
+
+    /**
+     * Record the substitutions used in the title and story in the EditorState. The SlotIndex returns the same set
+     * until a substitution is added or removed, so this only affects the state when one is.
+     */
+    private void updateSubstitutions() {
+        editorController.state.used.set(slotIndex.used());
+        editorController.state.overflow.set(slotIndex.hasOverflow());
     }
 
     @Override
@@ -52,7 +127,7 @@ public final class EditorStoryController implements Controller<StoryView> {
      * @return the stripped title
      */
     public String getTitle() {
-        return view.title.getText().strip();
+        return strippedTitle.of(view.title.getText());
     }
 
     /**
@@ -60,7 +135,7 @@ public final class EditorStoryController implements Controller<StoryView> {
      * @return the stripped story
      */
     public String getStory() {
-        return view.story.getText().strip();
+        return strippedStory.of(view.story.getText());
     }
 
     /**
@@ -72,10 +147,41 @@ public final class EditorStoryController implements Controller<StoryView> {
     }
 
     /**
-     * Calculate the set of substitutions used in the title and story.
-     * @return the set of substitutions represented by their index
+     * Retrieve the compiled title, compiling it only if the text has changed since it was last compiled.
+     * @return the title Template
      */
-    Set<Integer> getSubstitutions() {
-        return Fluke.allSubstituations(view.title.getText(), view.story.getText());
+    Template getTitleTemplate() {
+        final var text = view.title.getText();
+        if (titleTemplate == null || !titleTemplate.source().equals(text))
+            titleTemplate = Template.compile(text);
+        return titleTemplate;
+    }
+
+    /**
+     * Retrieve the compiled story, compiling it only if the text has changed since it was last compiled.
+     * @return the story Template
+     */
+    Template getStoryTemplate() {
+        final var text = view.story.getText();
+        if (storyTemplate == null || !storyTemplate.source().equals(text))
+            storyTemplate = Template.compile(text);
+        return storyTemplate;
+    }
+
+    /**
+     * The stripped text of a field. A TextInputControl returns the same String until its text changes, so the text
+     * only has to be compared by reference to know whether it must be stripped again.
+     */
+    private static final class StrippedText {
+        private String text;
+        private String stripped;
+
+        private String of(final String text) {
+            if (text != this.text) {
+                this.text = text;
+                stripped = text.strip();
+            }
+            return stripped;
+        }
     }
 }
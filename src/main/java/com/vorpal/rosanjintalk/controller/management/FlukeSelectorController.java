@@ -3,12 +3,16 @@ package com.vorpal.rosanjintalk.controller.management;
 // By Sebastian Raaphorst, 2023.
 
 import com.vorpal.rosanjintalk.controller.Controller;
+import com.vorpal.rosanjintalk.library.LibraryChange;
+import com.vorpal.rosanjintalk.library.LibraryIndex;
+import com.vorpal.rosanjintalk.library.LibraryWatcher;
 import com.vorpal.rosanjintalk.shared.Shared;
 import com.vorpal.rosanjintalk.view.management.FlukeSelectorView;
+import javafx.application.Platform;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -16,6 +20,7 @@ public final class FlukeSelectorController implements Controller<FlukeSelectorVi
     private final FlukeSelectorView view;
     private final ManagementController managementController;
     private final Path flukePath;
+    private LibraryWatcher watcher;
 
     public FlukeSelectorController(final ManagementController managementController) {
         view = new FlukeSelectorView();
@@ -29,7 +34,7 @@ public final class FlukeSelectorController implements Controller<FlukeSelectorVi
             final var disabled = newValue == null;
             managementController.managementButtonController.setButtonsDisable(disabled);
         });
-        populateFiles();
+        startWatching();
     }
 
     @Override
@@ -45,14 +50,6 @@ public final class FlukeSelectorController implements Controller<FlukeSelectorVi
         return view.fileList.getSelectionModel().getSelectedIndex();
     }
 
-    /**
-     * Get the number of files in the list.
-     * @return the number of files in the list
-     */
-    int getNumberFiles() {
-        return view.files.size();
-    }
-
     /**
      * Set the selected index in the file list.
      * @param index the index to select in the file list
@@ -70,20 +67,67 @@ public final class FlukeSelectorController implements Controller<FlukeSelectorVi
     }
 
     /**
-     * Repopulate the file view by reading in the file list from the fluke path.
+     * Populate the file view from the persisted library index, which does not touch the Fluke files,
+     * and then keep it up to date with a LibraryWatcher, which brings the index up to date in the background.
+     */
+    private void startWatching() {
+        final var index = LibraryIndex.load(flukePath);
+        view.files.setAll(index.names());
+        try {
+            watcher = LibraryWatcher.start(
+                    index,
+                    change -> Platform.runLater(() -> applyChange(change)),
+                    ex -> Platform.runLater(() -> Shared.unrecoverableError("Could not populate fluke file list.")));
+        } catch (final IOException ex) {
+            Shared.unrecoverableError("Could not watch the fluke directory for changes.");
+        }
+    }
+
+    /**
+     * Stop watching the fluke directory when the library is no longer on display.
+     */
+    void close() {
+        if (watcher != null)
+            watcher.close();
+    }
+
+    /**
+     * Report that a file was added, replaced, or deleted by this program, so that the list is updated
+     * without waiting for the directory watcher to notice.
+     * @param filename the name of the file in the fluke directory
+     */
+    void fileChanged(final String filename) {
+        if (watcher != null)
+            watcher.filesChanged(List.of(filename));
+    }
+
+    /**
+     * Insert and remove the changed files in the sorted file list, which costs time in proportion
+     * to the number of changes rather than to the number of files.
+     * The selected file stays selected, and if it was removed, the file that takes its place is selected instead.
+     * @param change the changes to the library
      */
-    void populateFiles() {
-        final List<String> result;
-        try (final var walk = Files.walk(flukePath, 1)) {
-            result = walk
-                    .filter(p -> !Files.isDirectory(p))
-                    .filter(p -> p.toFile().getName().endsWith(".fluke"))
-                    .map(p -> p.toFile().getName())
-                    .sorted()
-                    .toList();
-            view.files.setAll(result);
-        } catch (final IOException e) {
-            Shared.unrecoverableError("Could not populate fluke file list.");
+    private void applyChange(final LibraryChange change) {
+        final var selected = getSelectedValue();
+        final var selectedIdx = getSelectedIndex();
+
+        for (final var name : change.removed()) {
+            final var idx = Collections.binarySearch(view.files, name);
+            if (idx >= 0)
+                view.files.remove(idx);
         }
+        for (final var name : change.added()) {
+            final var idx = Collections.binarySearch(view.files, name);
+            if (idx < 0)
+                view.files.add(-idx - 1, name);
+        }
+
+        if (selected == null || view.files.isEmpty())
+            return;
+        final var newSelectedIdx = Collections.binarySearch(view.files, selected);
+        if (newSelectedIdx >= 0)
+            setSelectedIndex(newSelectedIdx);
+        else
+            setSelectedIndex(Math.min(selectedIdx, view.files.size() - 1));
     }
 }
@@ -4,9 +4,11 @@ package com.vorpal.rosanjintalk.controller.management;
 
 import com.vorpal.rosanjintalk.RosanjinTalk;
 import com.vorpal.rosanjintalk.controller.Controller;
+import com.vorpal.rosanjintalk.library.FlukeLoader;
 import com.vorpal.rosanjintalk.model.Fluke;
 import com.vorpal.rosanjintalk.shared.Shared;
 import com.vorpal.rosanjintalk.view.management.ManagementButtonView;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
@@ -17,12 +19,18 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public final class ManagementButtonController implements Controller<ManagementButtonView> {
     private final ManagementButtonView view;
     private final Stage stage;
     private final ManagementController managementController;
 
+    // The Fluke being loaded for the player or editor, if any.
+    private CompletableFuture<Fluke> loading;
+
     public ManagementButtonController(final Stage stage,
                                       final ManagementController managementController) {
         view = new ManagementButtonView();
@@ -35,11 +43,7 @@ public final class ManagementButtonController implements Controller<ManagementBu
     public void configure() {
         final var flukePath = Objects.requireNonNull(Shared.getFlukePath());
 
-        view.playButton.setOnAction(e -> {
-            final var selectedFluke = managementController.flukeSelectorController.getSelectedValue();
-            final var fluke = Fluke.load(selectedFluke);
-            RosanjinTalk.showPlayer(stage, fluke);
-        });
+        view.playButton.setOnAction(e -> loadSelected(fluke -> RosanjinTalk.showPlayer(stage, fluke)));
 
         view.addButton.setOnAction(e -> {
             final var fileChooser = new FileChooser();
@@ -57,39 +61,37 @@ public final class ManagementButtonController implements Controller<ManagementBu
                     return;
 
                 try {
-                    final var flukeSelectorController = managementController.flukeSelectorController;
-                    final var selectedIdx = flukeSelectorController.getSelectedIndex();
                     Files.copy(uri, flukePath.resolve(name), StandardCopyOption.REPLACE_EXISTING);
-                    flukeSelectorController.populateFiles();
-                    flukeSelectorController.setSelectedIndex(selectedIdx);
+                    managementController.flukeSelectorController.fileChanged(name);
                 } catch (final IOException ex) {
                     Shared.recoverableError("Could not copy file:\n\n" + uri + "\n\nto:\n\n" + flukePath);
                 }
             }
         });
 
-        view.newButton.setOnAction(e -> RosanjinTalk.showEditor(stage, null));
-
-        view.editButton.setOnAction(e -> {
-            final var selectedFluke = managementController.flukeSelectorController.getSelectedValue();
-            final var fluke = Fluke.load(selectedFluke);
-            RosanjinTalk.showEditor(stage, fluke);
+        view.newButton.setOnAction(e -> {
+            managementController.close();
+            RosanjinTalk.showEditor(stage, null);
         });
 
+        view.editButton.setOnAction(e -> loadSelected(fluke -> RosanjinTalk.showEditor(stage, fluke)));
+
         view.deleteButton.setOnAction(e -> {
             final var flukeSelectorController = managementController.flukeSelectorController;
             final var selectedFluke = flukeSelectorController.getSelectedValue();
             final var response = Shared.confirmationRequest("Are you sure you want to delete: " + selectedFluke);
             if (response) {
-                final var selectedIdx = flukeSelectorController.getSelectedIndex();
+                // A packed Fluke has no file of its own, and the pack is left alone.
+                if (!Files.exists(flukePath.resolve(selectedFluke))) {
+                    Shared.recoverableError("Could not delete: " + selectedFluke +
+                            "\n\nIt is stored in a pack. Unpack the pack to manage its Flukes individually.");
+                    return;
+                }
+
+                // The file that takes its place in the list is selected once the list is updated.
                 if (!flukePath.resolve(selectedFluke).toFile().delete())
                     Shared.recoverableError("Could not delete file: " + selectedFluke);
-                flukeSelectorController.populateFiles();
-                final var newSelectedIdx =
-                        selectedIdx >= flukeSelectorController.getNumberFiles() ?
-                                selectedIdx - 1 :
-                                selectedIdx;
-                flukeSelectorController.setSelectedIndex(newSelectedIdx);
+                flukeSelectorController.fileChanged(selectedFluke);
             }
         });
 
@@ -101,7 +103,14 @@ public final class ManagementButtonController implements Controller<ManagementBu
             }
         });
 
+        view.cancelButton.setOnAction(e -> {
+            if (loading != null)
+                loading.cancel(true);
+            setLoading(null);
+        });
+
         setButtonsDisable(true);
+        setLoading(null);
     }
 
     @Override
@@ -115,8 +124,51 @@ public final class ManagementButtonController implements Controller<ManagementBu
      * @param disable true if the buttons should be disabled, and false if they should be enabled
      */
     public void setButtonsDisable(boolean disable) {
-        view.playButton.setDisable(disable);
-        view.editButton.setDisable(disable);
-        view.deleteButton.setDisable(disable);
+        view.playButton.setDisable(disable || loading != null);
+        view.editButton.setDisable(disable || loading != null);
+        view.deleteButton.setDisable(disable || loading != null);
+    }
+
+    /**
+     * Load the selected Fluke in the background, showing the progress indicator and cancel button meanwhile,
+     * and then hand it to the screen that needs it. If it cannot be loaded, the user can pick another file.
+     * @param show shows the player or editor for the loaded Fluke
+     */
+    private void loadSelected(final Consumer<Fluke> show) {
+        final var flukePath = Objects.requireNonNull(Shared.getFlukePath());
+        final var selectedFluke = managementController.flukeSelectorController.getSelectedValue();
+        if (selectedFluke == null || loading != null)
+            return;
+
+        final var future = FlukeLoader.load(flukePath, selectedFluke);
+        setLoading(future);
+        future.whenComplete((fluke, ex) -> Platform.runLater(() -> {
+            // The load was cancelled, in which case the screen has already been reset.
+            if (loading != future)
+                return;
+            setLoading(null);
+
+            if (ex != null) {
+                final var cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                Shared.recoverableError("Could not read file:\n\n" + selectedFluke + "\n\n" + cause.getMessage());
+                return;
+            }
+            managementController.close();
+            show.accept(fluke);
+        }));
+    }
+
+    /**
+     * Show or hide the loading state, during which the buttons that act on files are disabled.
+     * @param future the Fluke being loaded, or null if nothing is loading
+     */
+    private void setLoading(final CompletableFuture<Fluke> future) {
+        loading = future;
+        final var isLoading = future != null;
+        view.loadingIndicator.setVisible(isLoading);
+        view.cancelButton.setVisible(isLoading);
+        view.addButton.setDisable(isLoading);
+        view.newButton.setDisable(isLoading);
+        setButtonsDisable(managementController.flukeSelectorController.getSelectedValue() == null);
     }
 }
@@ -30,4 +30,11 @@ public final class ManagementController implements Controller<ManagementView> {
     public ManagementView getView() {
         return view;
     }
+
+    /**
+     * Release what the management screen holds when another screen replaces it.
+     */
+    void close() {
+        flukeSelectorController.close();
+    }
 }
@@ -18,41 +18,22 @@ public final class PlayerButtonController implements Controller<PlayerButtonView
     public void configure() {
         view.playButton.setOnAction(e -> {
             final var success = playerController.displayStory();
-            if (success) {
+            if (success)
                 playerController.playerInputsController.freeze();
-                view.playButton.setDisable(true);
-                view.copyButton.setDisable(false);
-                view.saveButton.setDisable(false);
-            }
         });
 
         view.copyButton.setOnAction(e -> playerController.playerStoryController.copyToClipboard());
         view.saveButton.setOnAction(e -> playerController.playerStoryController.saveStory());
-        configurePlayButtonState();
 
-        // The state of the copy and save buttons are enabled once the game is played.
-        view.copyButton.setDisable(true);
-        view.saveButton.setDisable(true);
+        // The play button is enabled once every prompt is answered, and the copy and save buttons once the
+        // Fluke is played.
+        view.playButton.disableProperty().bind(playerController.state.playDisabled);
+        view.copyButton.disableProperty().bind(playerController.state.copySaveDisabled);
+        view.saveButton.disableProperty().bind(playerController.state.copySaveDisabled);
     }
 
     @Override
     public PlayerButtonView getView() {
         return view;
     }
-
-    /**
-     * Configure the state of the play button in this panel
-     * depending on the PromptsController and if the Fluke has been played.
-     */
-    void configurePlayButtonState() {
-        view.playButton.setDisable(playerController.playerInputsController.isIncomplete());
-    }
-
-    /**
-     * Configure the state of the copy and save button in this panel,
-     * which is enabled after the Fluke has been played.
-     */
-    void configureCopySaveButtonState() {
-        // TODO: save button should be shown when the story has been generated.
-    }
 }
@@ -4,24 +4,38 @@ package com.vorpal.rosanjintalk.controller.player;
 
 import com.vorpal.rosanjintalk.controller.Controller;
 import com.vorpal.rosanjintalk.model.Fluke;
+import com.vorpal.rosanjintalk.model.InputBlockedException;
 import com.vorpal.rosanjintalk.model.InputEmptyException;
+import com.vorpal.rosanjintalk.model.SlotTable;
+import com.vorpal.rosanjintalk.model.WordFilter;
 import com.vorpal.rosanjintalk.shared.Shared;
 import com.vorpal.rosanjintalk.view.shared.TopView;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.util.Objects;
+
 public final class PlayerController implements Controller<TopView> {
     private final TopView view;
     final Stage stage;
     final PlayerInputsController playerInputsController;
     final PlayerButtonController playerButtonController;
     final PlayerStoryController playerStoryController;
+    final PlayerState state;
     final Fluke fluke;
+
+    // The terms that answers may not contain.
+    final WordFilter filter;
+
+    // The answers that produced the story on display, if any, so that it can be rendered again to a file.
+    SlotTable displayedAnswers;
     private static final String MISSING_PROMPTS = "Answers to prompts incomplete.";
 
     public PlayerController(final Stage stage,
                             final Fluke fluke) {
         this.stage = stage;
         this.fluke = fluke;
+        filter = loadFilter();
 
         playerInputsController = new PlayerInputsController(this, fluke);
         playerButtonController = new PlayerButtonController(this);
@@ -31,6 +45,29 @@ public final class PlayerController implements Controller<TopView> {
                 playerButtonController.getView(),
                 playerStoryController.getView()
         );
+        state = new PlayerState();
+    }
+
+    /**
+     * Load the blocklist from the fluke directory, falling back to the default terms if it cannot be read.
+     * @return the WordFilter for the answers
+     */
+    private static WordFilter loadFilter() {
+        try {
+            return WordFilter.load(Objects.requireNonNull(Shared.getFlukePath()));
+        } catch (final IOException ex) {
+            Shared.recoverableError("Could not read the blocklist, so the default one will be used:\n\n" +
+                    ex.getMessage());
+            return WordFilter.defaults();
+        }
+    }
+
+    /**
+     * Report an answer that contains a blocked term.
+     * @param term the blocked term, as it appears in the answer
+     */
+    static void reportBlocked(final String term) {
+        Shared.recoverableError("You are being sent to fleurgatory.\n\n\"" + term + "\" is not an admissible answer.");
     }
 
     @Override
@@ -46,25 +83,30 @@ public final class PlayerController implements Controller<TopView> {
     }
 
     /**
-     * Create the story and populate the story view's title and story text.
+     * Create the story and populate the story view's title, and start rendering its pages.
      * Technically, this method should always return true since the play button should
      * only be enabled if the inputs are all populated.
      * @return true if populating the story was successful, and false otherwise.
      */
     boolean displayStory() {
         // This should never happen.
-        if (playerInputsController.isIncomplete()) {
+        if (!state.complete.getValue()) {
             Shared.recoverableError(MISSING_PROMPTS);
             return false;
         }
 
         final var answers = playerInputsController.getAnswers();
         try {
-            final var title = Fluke.substitute(answers, fluke.title());
-            final var story = Fluke.substitute(answers, fluke.story());
-            playerStoryController.setTitle(title);
-            playerStoryController.setStory(story);
+            filter.check(answers);
+            final var title = fluke.substituteTitle(answers);
+            playerStoryController.showStory(title, answers);
+            displayedAnswers = answers;
+            state.played.set(true);
             return true;
+        } catch (final InputBlockedException ex) {
+            // This should never happen, since the answers are checked as they are typed.
+            reportBlocked(ex.term);
+            return false;
         } catch (final InputEmptyException ex) {
             // This should never happen.
             Shared.recoverableError(MISSING_PROMPTS);
@@ -4,51 +4,48 @@ package com.vorpal.rosanjintalk.controller.player;
 
 import com.vorpal.rosanjintalk.controller.Controller;
 import com.vorpal.rosanjintalk.model.Fluke;
-import com.vorpal.rosanjintalk.shared.Shared;
+import com.vorpal.rosanjintalk.model.SlotTable;
 import com.vorpal.rosanjintalk.view.player.PlayerInputsView;
-import com.vorpal.rosanjintalk.view.player.PlayerRowView;
+import com.vorpal.rosanjintalk.view.player.PlayerRow;
+import com.vorpal.rosanjintalk.view.player.PlayerRowCell;
 import javafx.application.Platform;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public final class PlayerInputsController implements Controller<PlayerInputsView> {
     private final PlayerInputsView view;
-    private final List<PlayerRowView> rows;
+    private final List<PlayerRow> rows;
     private final PlayerController playerController;
+    private final SlotTable prompts;
+
+    // The number of blank answers, kept up to date as the answers change. Every answer starts blank.
+    private int blankAnswers;
 
     public PlayerInputsController(final PlayerController playerController,
                                   final Fluke fluke) {
         Objects.requireNonNull(fluke);
         view = new PlayerInputsView();
-        rows = new ArrayList<>();
+        rows = view.rows;
         this.playerController = playerController;
+        prompts = fluke.inputs();
 
         // Set the fixed rows.
-        fluke.inputs().forEach((idx, prompt) ->
-                rows.add(new PlayerRowView(idx, prompt))
-        );
+        final var initialRows = new ArrayList<PlayerRow>(prompts.size());
+        for (int ordinal = 0; ordinal < prompts.size(); ++ordinal)
+            initialRows.add(new PlayerRow(ordinal, prompts.value(ordinal)));
 
         // Shuffle the rows to make the game less predictable.
         // Create a new random which seeds itself so that the order is unpredictable.
-        Collections.shuffle(rows, new Random());
+        // The rows are shuffled once here, so the order stays the same as the form is scrolled.
+        Collections.shuffle(initialRows, new Random());
+        view.rows.setAll(initialRows);
+        blankAnswers = initialRows.size();
     }
 
     @Override
     public void configure() {
-        rows.forEach(rowView -> {
-            rowView.answer.textProperty().addListener((observable, oldValue, newValue) -> {
-                // Any variation of fleurg is not an admissible answer.
-                if (newValue.strip().toLowerCase().contains("fleurg")) {
-                    Shared.recoverableError("You are being sent to fleurgatory.");
-                    Platform.runLater(rowView.answer::clear);
-                }
-
-                // In case the text was deleted, reconfigure the play button state.
-                playerController.playerButtonController.configurePlayButtonState();
-            });
-            view.addRow(view.getRowCount(), rowView.prompt, rowView.answer);
-        });
+        view.rowList.setCellFactory(list -> new PlayerRowCell(view.editable, this::answerEdited));
+        playerController.state.blankAnswers.set(blankAnswers);
     }
 
     @Override
@@ -56,23 +53,64 @@ public final class PlayerInputsController implements Controller<PlayerInputsView
         return view;
     }
 
+    /**
+     * Called by a cell when the answer in its row is edited.
+     * @param row      the row that was edited
+     * @param previous the answer before the edit
+     */
+    private void answerEdited(final PlayerRow row, final String previous) {
+        // Any answer with a blocked term, e.g. any variation of fleurg, is not admissible.
+        // Only the part of the answer that changed can contain a new blocked term, so only that part is scanned.
+        final var match = playerController.filter.findInChange(previous, row.getAnswer());
+        if (match != null) {
+            PlayerController.reportBlocked(match.text());
+            Platform.runLater(() -> {
+                // Replacing the row with itself redisplays it in its cell, if it is visible.
+                final var answer = row.getAnswer();
+                row.setAnswer("");
+                final var index = rows.indexOf(row);
+                if (index >= 0)
+                    rows.set(index, row);
+                updateBlankAnswers(answer, "");
+            });
+        }
+
+        // In case the text was deleted, the play button state must be recalculated.
+        updateBlankAnswers(previous, row.getAnswer());
+    }
+
+    /**
+     * Update the number of blank answers for a change to an answer, which only affects it if the answer changed
+     * between blank and not blank.
+     * @param previous the answer before the change
+     * @param current  the answer after the change
+     */
+    private void updateBlankAnswers(final String previous, final String current) {
+        final var wasBlank = previous.isBlank();
+        final var isBlank = current.isBlank();
+        if (wasBlank != isBlank) {
+            blankAnswers += isBlank ? 1 : -1;
+            playerController.state.blankAnswers.set(blankAnswers);
+        }
+    }
+
     /**
      * Returns if this component is incomplete, i.e. there is an answer that is blank.
      * This is for use by the play button state enable calculation.
      * @return true if incomplete (i.e. any answers blank), false otherwise
      */
     boolean isIncomplete() {
-        return rows.stream()
-                .anyMatch(r -> r.answer.getText().isBlank());
+        return blankAnswers > 0;
     }
 
     /**
      * Retrieve the list of answers from the component for use in the substitution of a Fluke file.
-     * @return a Map of index to answer
+     * @return a SlotTable of answers that shares its keys with the Fluke's inputs
      */
-    Map<Integer, String> getAnswers() {
-        return rows.stream()
-                .collect(Collectors.toUnmodifiableMap(r -> r.idx, r -> r.answer.getText()));
+    SlotTable getAnswers() {
+        final var answers = new String[prompts.size()];
+        rows.forEach(r -> answers[r.ordinal] = r.getAnswer());
+        return prompts.withValues(answers);
     }
 
     /**
@@ -80,6 +118,6 @@ public final class PlayerInputsController implements Controller<PlayerInputsView
      * the play button is pressed.
      */
     void freeze() {
-        rows.forEach(r -> r.answer.setEditable(false));
+        view.editable.set(false);
     }
 }
@@ -0,0 +1,36 @@
+package com.vorpal.rosanjintalk.controller.player;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.controller.StateGraph;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+
+/**
+ * The state of the player that the buttons depend on, derived once per pulse from what the other controllers report.
+ *
+ * The inputs controller keeps the number of blank answers up to date as each answer changes, and the Fluke is marked
+ * as played once the story has been displayed. The rest is derived from them, so none of it depends on the number of
+ * prompts.
+ */
+final class PlayerState {
+    final StateGraph graph = new StateGraph();
+
+    // The sources.
+    final IntegerProperty blankAnswers = new SimpleIntegerProperty();
+    final BooleanProperty played = new SimpleBooleanProperty(false);
+
+    // Completeness: every prompt has been answered.
+    final StateGraph.Derived<Boolean> complete;
+
+    final StateGraph.Derived<Boolean> playDisabled;
+    final StateGraph.Derived<Boolean> copySaveDisabled;
+
+    PlayerState() {
+        complete = graph.derive(() -> blankAnswers.get() == 0, blankAnswers);
+        playDisabled = graph.derive(() -> !complete.getValue() || played.get(), complete, played);
+        copySaveDisabled = graph.derive(() -> !played.get(), played);
+    }
+}
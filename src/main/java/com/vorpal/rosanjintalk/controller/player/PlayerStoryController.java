@@ -1,81 +1,134 @@
 package com.vorpal.rosanjintalk.controller.player;
 
 import com.vorpal.rosanjintalk.controller.Controller;
+import com.vorpal.rosanjintalk.model.PageWriter;
+import com.vorpal.rosanjintalk.model.SlotTable;
 import com.vorpal.rosanjintalk.shared.Shared;
-import com.vorpal.rosanjintalk.view.shared.StoryView;
+import com.vorpal.rosanjintalk.view.player.PlayerStoryView;
+import javafx.application.Platform;
 
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
 
-public final class PlayerStoryController implements Controller<StoryView> {
-    private final StoryView view;
+public final class PlayerStoryController implements Controller<PlayerStoryView> {
+    // The maximum length of a page of the story, and the number of pages to add to the view at once.
+    private static final int PAGE_LENGTH = 2048;
+    private static final int PAGE_BATCH = 64;
+
+    private final PlayerStoryView view;
     private final PlayerController playerController;
 
+    // Incremented for each story shown, so that the pages of a story that is still being rendered when it is replaced
+    // are discarded. Only used on the JavaFX application thread.
+    private int generation;
+
     public PlayerStoryController(final PlayerController playerController) {
-        view = new StoryView();
+        view = new PlayerStoryView();
         this.playerController = playerController;
     }
 
     @Override
     public void configure() {
-        view.title.setEditable(false);
-//        view.title.setDisable(true);
-        view.title.setFocusTraversable(false);
-        view.story.setEditable(false);
-//        view.story.setDisable(true);
-        view.story.setFocusTraversable(false);
     }
 
     @Override
-    public StoryView getView() {
+    public PlayerStoryView getView() {
         return view;
     }
 
-    public void setTitle(final String text) {
-        view.title.setText(text);
-    }
+    /**
+     * Show the title, and render the story for a set of answers into the view on a background thread.
+     * The pages of the story are added as each batch of them is rendered, so the start of a long story can be read
+     * while the rest is still being rendered.
+     * @param title   the title, with the answers substituted
+     * @param answers the answers, which must already have been checked against the Fluke
+     */
+    void showStory(final String title, final SlotTable answers) {
+        final var current = ++generation;
+        view.title.setText(title);
+        view.pages.clear();
 
-    public void setStory(final String text) {
-        view.story.setText(text);
+        final var fluke = playerController.fluke;
+        final var renderer = new Thread(() -> {
+            try (final var pages = new PageWriter(PAGE_LENGTH, PAGE_BATCH, batch -> Platform.runLater(() -> {
+                if (generation == current)
+                    view.pages.addAll(batch);
+            }))) {
+                fluke.writeStoryText(answers, pages);
+            } catch (final IOException | RuntimeException ex) {
+                Platform.runLater(() -> {
+                    if (generation == current)
+                        Shared.recoverableError("Could not render the story:\n\n" + ex.getMessage());
+                });
+            }
+        }, "StoryRenderer");
+        renderer.setDaemon(true);
+        renderer.start();
     }
 
     /**
      * Produce a formatted version of the story, i.e. the title with two
      * platform-dependent line breaks and then the story followed by a line break.
-     * @return the String representing the formatted story.
+     * The story is rendered again from the answers that produced it, since the view only holds its pages.
+     * @return the String representing the formatted story, or null if no story has been displayed
      */
     private String getFormattedStory() {
-        final var lineSep = System.lineSeparator();
-        return view.title.getText() + lineSep + lineSep + view.story.getText() + lineSep;
+        final var answers = playerController.displayedAnswers;
+        if (answers == null)
+            return null;
+
+        final var out = new StringWriter();
+        try {
+            playerController.fluke.writeStory(answers, out);
+        } catch (final IOException ex) {
+            // A StringWriter does not fail.
+            throw new IllegalStateException(ex);
+        }
+        return out.toString();
     }
+
     /**
      * Copy the story to the clipboard. This involves the header, followed
      * by two returns, and then the body of the story text.
      */
     void copyToClipboard() {
-        final var formattedStory = getFormattedStory();
+        final String formattedStory;
+        try {
+            formattedStory = getFormattedStory();
+        } catch (final RuntimeException ex) {
+            Shared.recoverableError("Could not render the story:\n\n" + ex.getMessage());
+            return;
+        }
+        if (formattedStory == null)
+            return;
         final var selection  = new StringSelection(formattedStory);
         final var clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
         clipboard.setContents(selection, null);
     }
 
     /**
-     * Save the story to a file.
+     * Save the story to a file. The story is rendered again from the answers that produced it and streamed to the file,
+     * so no copy of the formatted story is built in memory.
      */
     void saveStory() {
-        final var formattedStory = getFormattedStory();
-        final var file = Shared.textFileChooserDialog(playerController.stage);
+        final var answers = playerController.displayedAnswers;
+        if (answers == null)
+            return;
 
+        final var file = Shared.textFileChooserDialog(playerController.stage);
         if (file == null)
             return;
 
-        try {
-            final var path = file.toPath();
-            Files.writeString(path, formattedStory);
+        try (final var writer = Files.newBufferedWriter(file.toPath())) {
+            playerController.fluke.writeStory(answers, writer);
         } catch (final IOException ex) {
             Shared.recoverableError("Could not write story to:\n\n" + file);
+        } catch (final RuntimeException ex) {
+            // The story can fail to render, e.g. if the body of a binary Fluke cannot be read.
+            Shared.recoverableError("Could not render the story:\n\n" + ex.getMessage());
         }
     }
 }
@@ -0,0 +1,67 @@
+package com.vorpal.rosanjintalk.library;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.model.Fluke;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads, parses, and validates Fluke files on background daemon threads, so that the FX thread never waits on disk.
+ * Loose files are looked up in the shared FlukeCache first, so a file that has not changed is not read again.
+ * The story is read and decoded here too, since a Fluke is loaded to be played or edited, and a binary Fluke may have
+ * left its story in the file.
+ *
+ * Cancelling the returned future interrupts the read, which stops it if it is still waiting on the file.
+ * If it has already reached parsing, the parse finishes in the background and its result is discarded.
+ */
+public final class FlukeLoader {
+    private static final ExecutorService LOADERS = Executors.newCachedThreadPool(runnable -> {
+        final var thread = new Thread(runnable, "FlukeLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FlukeLoader() {
+    }
+
+    /**
+     * Load a Fluke in the background, from its own file or from a pack (see Fluke.find).
+     * @param directory the flukes directory
+     * @param filename  the filename of the Fluke
+     * @return a future that completes with the Fluke, or exceptionally with the IOException or RuntimeException
+     *         that prevented it from being read
+     */
+    public static CompletableFuture<Fluke> load(final Path directory, final String filename) {
+        final var result = new CompletableFuture<Fluke>();
+        final var task = LOADERS.submit(() -> {
+            try {
+                final var fluke = Fluke.find(directory, filename);
+                fluke.storyTemplate();
+                result.complete(fluke);
+            } catch (final ClosedByInterruptException ex) {
+                // The load was cancelled while reading.
+                result.cancel(false);
+            } catch (final UncheckedIOException ex) {
+                // The story could not be read from the file, possibly because the load was cancelled.
+                if (ex.getCause() instanceof ClosedByInterruptException)
+                    result.cancel(false);
+                else
+                    result.completeExceptionally(ex.getCause());
+            } catch (final IOException | RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        result.whenComplete((fluke, ex) -> {
+            if (result.isCancelled())
+                task.cancel(true);
+        });
+        return result;
+    }
+}
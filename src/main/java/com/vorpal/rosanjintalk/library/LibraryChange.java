@@ -0,0 +1,67 @@
+package com.vorpal.rosanjintalk.library;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A batch of changes to the library, as reported by a LibraryWatcher.
+ *
+ * @param index    The library index after the changes.
+ * @param added    The names of the files that were added, sorted.
+ * @param removed  The names of the files that were removed, sorted.
+ * @param modified The names of the files that are still listed but whose entries changed, sorted.
+ */
+public record LibraryChange(LibraryIndex index,
+                            List<String> added,
+                            List<String> removed,
+                            List<String> modified) {
+    /**
+     * Compute the changes between two indices by merging their sorted entries.
+     * @param before the index before the changes
+     * @param after  the index after the changes
+     * @return the changes
+     */
+    static LibraryChange between(final LibraryIndex before, final LibraryIndex after) {
+        final var added = new ArrayList<String>();
+        final var removed = new ArrayList<String>();
+        final var modified = new ArrayList<String>();
+
+        final var beforeEntries = before.entries().iterator();
+        final var afterEntries = after.entries().iterator();
+        var beforeEntry = next(beforeEntries);
+        var afterEntry = next(afterEntries);
+        while (beforeEntry != null || afterEntry != null) {
+            final var comparison =
+                    beforeEntry == null ? 1 :
+                    afterEntry == null ? -1 :
+                    beforeEntry.filename().compareTo(afterEntry.filename());
+            if (comparison < 0) {
+                removed.add(beforeEntry.filename());
+                beforeEntry = next(beforeEntries);
+            } else if (comparison > 0) {
+                added.add(afterEntry.filename());
+                afterEntry = next(afterEntries);
+            } else {
+                if (!beforeEntry.equals(afterEntry))
+                    modified.add(afterEntry.filename());
+                beforeEntry = next(beforeEntries);
+                afterEntry = next(afterEntries);
+            }
+        }
+        return new LibraryChange(after, added, removed, modified);
+    }
+
+    private static LibraryEntry next(final Iterator<LibraryEntry> entries) {
+        return entries.hasNext() ? entries.next() : null;
+    }
+
+    /**
+     * @return true if nothing changed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+}
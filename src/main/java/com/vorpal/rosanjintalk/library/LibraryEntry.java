@@ -0,0 +1,71 @@
+package com.vorpal.rosanjintalk.library;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.model.Fluke;
+import com.vorpal.rosanjintalk.model.SlotSet;
+
+/**
+ * What the library index records about one Fluke file, so that the library can be listed without reading the files.
+ *
+ * A Fluke in a pack is described in the same way, except that its modification time and size are those of the pack.
+ *
+ * @param filename    The name of the file in the flukes directory, or of the Fluke in its pack.
+ * @param modified    The last modification time of the file in nanoseconds, used to detect changes.
+ * @param size        The size of the file in bytes, used to detect changes.
+ * @param title       The title of the Fluke, or null if the file could not be read as a Fluke.
+ * @param promptCount The number of prompts in the Fluke.
+ * @param slots       The substitutions referenced in the title and story of the Fluke.
+ * @param pack        The filename of the pack that holds the Fluke, or null if it is in its own file.
+ */
+public record LibraryEntry(String filename,
+                           long modified,
+                           long size,
+                           String title,
+                           int promptCount,
+                           SlotSet slots,
+                           String pack) {
+    /**
+     * Create the entry for a Fluke that was read from a file.
+     * @param filename the name of the file
+     * @param modified the last modification time of the file in nanoseconds
+     * @param size     the size of the file in bytes
+     * @param pack     the filename of the pack that holds the Fluke, or null if it is in its own file
+     * @param fluke    the Fluke read from the file
+     * @return the entry
+     */
+    static LibraryEntry of(final String filename,
+                           final long modified,
+                           final long size,
+                           final String pack,
+                           final Fluke fluke) {
+        final var slots = fluke.titleTemplate().distinctSlots().union(fluke.storySlots());
+        return new LibraryEntry(filename, modified, size, fluke.title(), fluke.inputs().size(), slots, pack);
+    }
+
+    /**
+     * Create the entry for a file that could not be read as a Fluke. It is still listed, so that it can be deleted.
+     * @param filename the name of the file
+     * @param modified the last modification time of the file in nanoseconds
+     * @param size     the size of the file in bytes
+     * @param pack     the filename of the pack that holds the Fluke, or null if it is in its own file
+     * @return the entry
+     */
+    static LibraryEntry unreadable(final String filename, final long modified, final long size, final String pack) {
+        return new LibraryEntry(filename, modified, size, null, 0, SlotSet.EMPTY, pack);
+    }
+
+    /**
+     * @return true if the Fluke is in a pack rather than in its own file
+     */
+    public boolean isPacked() {
+        return pack != null;
+    }
+
+    /**
+     * @return true if the file could be read as a Fluke when it was indexed
+     */
+    public boolean isReadable() {
+        return title != null;
+    }
+}
@@ -0,0 +1,431 @@
+package com.vorpal.rosanjintalk.library;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.model.Fluke;
+import com.vorpal.rosanjintalk.model.FlukePack;
+import com.vorpal.rosanjintalk.model.SlotSet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Fluke files in the flukes directory, persisted to an index file in that directory so that the library can be
+ * listed at startup without walking the directory or reading any Flukes.
+ *
+ * The Flukes in the packs in the directory are listed too (see FlukePack). A file takes precedence over a packed
+ * Fluke with the same name, and an earlier pack, in order of filename, over a later one.
+ *
+ * A refresh only does the work that the changes require:
+ * 1. If the modification time of the directory is the one recorded in the index, no file has been added or removed,
+ *    so the directory is not listed and only the files already in the index are checked.
+ * 2. A file is only read again if its modification time or size differs from its entry, and then, if it is binary,
+ *    only its header is read, since the entry only needs the title, prompts, and substitutions.
+ * 3. The Flukes in a pack are only read again if the pack has changed, and otherwise only its names are examined.
+ *
+ * Individual files can also be brought up to date with update, e.g. when a LibraryWatcher reports that they changed.
+ * This changes the index in place, in time proportional to the number of files rather than to the size of the
+ * library, and leaves it to flush to persist the changes, so that a burst of updates writes the index file once.
+ * An index must therefore only be used by one thread at a time.
+ *
+ * The index is only a cache: if it is missing or cannot be read, the library is indexed from scratch, and if it
+ * cannot be written, the refreshed snapshot is still returned.
+ */
+public final class LibraryIndex {
+    public static final String INDEX_FILENAME = ".library.index";
+    public static final String FLUKE_EXTENSION = ".fluke";
+
+    // "FLIX", followed by the version of the layout.
+    private static final int MAGIC = 0x464C4958;
+    private static final int VERSION = 2;
+
+    // The fewest bytes that an entry takes: the length of its filename, its modification time and size, and whether
+    // it is packed and readable.
+    private static final int MIN_ENTRY_SIZE = Integer.BYTES + 2 * Long.BYTES + 2;
+
+    // The directory modification time recorded when there is no index, which matches no real time.
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    // All refreshes and updates run on one daemon thread, so that at most one is writing the index at a time.
+    static final ExecutorService REFRESHER = Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable, "LibraryIndex");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final long directoryModified;
+
+    // The entries by filename, which update changes in place.
+    private final TreeMap<String, LibraryEntry> entries;
+
+    // The packs that held entries when the index was made. Packs only change on a refresh, which makes a new index.
+    private final TreeSet<String> packNames = new TreeSet<>();
+
+    // Whether update has changed the entries since the index was persisted.
+    private boolean unsaved = false;
+
+    private LibraryIndex(final Path directory,
+                         final long directoryModified,
+                         final TreeMap<String, LibraryEntry> entries) {
+        this.directory = directory;
+        this.directoryModified = directoryModified;
+        this.entries = entries;
+        for (final var entry : entries.values())
+            if (entry.isPacked())
+                packNames.add(entry.pack());
+    }
+
+    /**
+     * Load the index persisted in the given directory. This reads only the index file.
+     * @param directory the flukes directory
+     * @return the persisted index, or an empty index if there is none or it cannot be read
+     */
+    public static LibraryIndex load(final Path directory) {
+        final var indexPath = directory.resolve(INDEX_FILENAME);
+        try {
+            // The index is read whole, so that every count can be checked against the bytes that remain before
+            // anything is allocated for it, and a corrupt count is rebuilt like any other corruption.
+            final var in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(indexPath)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return empty(directory);
+
+            final var directoryModified = in.readLong();
+            final var count = in.readInt();
+            if (count < 0 || count > in.available() / MIN_ENTRY_SIZE)
+                return empty(directory);
+
+            final var entries = new TreeMap<String, LibraryEntry>();
+            for (int i = 0; i < count; ++i) {
+                final var entry = readEntry(in);
+                entries.put(entry.filename(), entry);
+            }
+            return new LibraryIndex(directory, directoryModified, entries);
+        } catch (final IOException | IllegalArgumentException ex) {
+            // A missing, truncated, or corrupt index is simply rebuilt.
+            return empty(directory);
+        }
+    }
+
+    private static LibraryIndex empty(final Path directory) {
+        return new LibraryIndex(directory, UNKNOWN, new TreeMap<>());
+    }
+
+    /**
+     * @return the flukes directory that this index describes
+     */
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * @return the entries, sorted by filename
+     */
+    public Collection<LibraryEntry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * @return a copy of the filenames, sorted
+     */
+    public List<String> names() {
+        return List.copyOf(entries.keySet());
+    }
+
+    /**
+     * @param filename the name of a file in the flukes directory
+     * @return the entry for the file, or null if it is not in the index
+     */
+    public LibraryEntry entry(final String filename) {
+        return entries.get(filename);
+    }
+
+    /**
+     * Bring the index up to date with the flukes directory and persist it.
+     * Only the files that have changed since they were indexed are read.
+     * @return the refreshed index, which is this index if nothing has changed
+     * @throws IOException if the directory cannot be listed
+     */
+    public LibraryIndex refresh() throws IOException {
+        // Read the modification time before listing, so that a file added during the listing changes it again.
+        final var currentDirectoryModified = modifiedNanos(Files.readAttributes(directory, BasicFileAttributes.class));
+        final var directoryChanged = currentDirectoryModified != directoryModified;
+        final var candidates = directoryChanged ? listFlukeFiles() : looseNames();
+
+        final var refreshed = new TreeMap<String, LibraryEntry>();
+        for (final var name : candidates) {
+            final var path = directory.resolve(name);
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (final NoSuchFileException ex) {
+                continue;
+            }
+            if (!attributes.isRegularFile())
+                continue;
+
+            final var modified = modifiedNanos(attributes);
+            final var size = attributes.size();
+            final var existing = entries.get(name);
+            if (existing != null && !existing.isPacked() && existing.modified() == modified && existing.size() == size)
+                refreshed.put(name, existing);
+            else
+                refreshed.put(name, index(path, name, modified, size));
+        }
+
+        // Packs are only listed if the directory has changed, since otherwise they are the ones already indexed.
+        for (final var pack : directoryChanged ? FlukePack.inDirectory(directory) : indexedPacks()) {
+            for (int i = 0; i < pack.count(); ++i) {
+                final var name = pack.name(i);
+                if (!refreshed.containsKey(name))
+                    refreshed.put(name, indexPacked(pack, i, name));
+            }
+        }
+
+        if (!directoryChanged && refreshed.equals(entries)) {
+            flush();
+            return this;
+        }
+
+        final var index = new LibraryIndex(directory, currentDirectoryModified, refreshed);
+        index.persist();
+        return index;
+    }
+
+    /**
+     * Bring the entries for the given files up to date in place, without listing the directory or persisting the index.
+     * A file that no longer exists is removed from the index, unless a pack already in the index holds a Fluke of the
+     * same name, and one that is not in the index is added.
+     *
+     * The directory modification time recorded in the index is left as it was, since other files may have been added
+     * or removed that have not been reported yet, so the next refresh lists the directory again.
+     *
+     * @param filenames the names of the files that may have changed
+     * @return the changes, whose index is this index
+     */
+    public LibraryChange update(final Collection<String> filenames) {
+        final var added = new ArrayList<String>();
+        final var removed = new ArrayList<String>();
+        final var changed = new ArrayList<String>();
+        List<FlukePack> packs = null;
+        for (final var name : filenames) {
+            final var path = directory.resolve(name);
+            final var existing = entries.get(name);
+            LibraryEntry entry = null;
+            try {
+                final var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    final var modified = modifiedNanos(attributes);
+                    final var size = attributes.size();
+                    entry = existing != null && !existing.isPacked() &&
+                            existing.modified() == modified && existing.size() == size ?
+                            existing :
+                            index(path, name, modified, size);
+                }
+            } catch (final IOException ex) {
+                // The file is gone or cannot be examined, so it is no longer listed.
+            }
+
+            // A packed Fluke that the file hid takes its place.
+            if (entry == null) {
+                if (packs == null)
+                    packs = indexedPacks();
+                for (final var pack : packs) {
+                    final var i = pack.indexOf(name);
+                    if (i >= 0) {
+                        entry = indexPacked(pack, i, name);
+                        break;
+                    }
+                }
+            }
+            if (Objects.equals(entry, existing))
+                continue;
+
+            unsaved = true;
+            if (entry == null) {
+                entries.remove(name);
+                removed.add(name);
+            } else {
+                entries.put(name, entry);
+                (existing == null ? added : changed).add(name);
+            }
+        }
+
+        added.sort(null);
+        removed.sort(null);
+        changed.sort(null);
+        return new LibraryChange(this, added, removed, changed);
+    }
+
+    /**
+     * Persist the changes that update has made since the index was persisted, if there are any.
+     */
+    public void flush() {
+        if (unsaved)
+            persist();
+    }
+
+    private List<String> listFlukeFiles() throws IOException {
+        final var result = new ArrayList<String>();
+        try (final var stream = Files.newDirectoryStream(directory, "*" + FLUKE_EXTENSION)) {
+            for (final var path : stream)
+                result.add(path.getFileName().toString());
+        }
+        return result;
+    }
+
+    /**
+     * @return the names of the entries that are in their own files
+     */
+    private List<String> looseNames() {
+        final var result = new ArrayList<String>(entries.size());
+        for (final var entry : entries.values())
+            if (!entry.isPacked())
+                result.add(entry.filename());
+        return result;
+    }
+
+    /**
+     * @return the packs that held entries when this index was made, in order of filename, leaving out any that cannot be opened
+     */
+    private List<FlukePack> indexedPacks() {
+        final var result = new ArrayList<FlukePack>(packNames.size());
+        for (final var packName : packNames) {
+            try {
+                result.add(FlukePack.open(directory.resolve(packName)));
+            } catch (final IOException ex) {
+                // The pack is gone, so its Flukes are no longer listed.
+            }
+        }
+        return result;
+    }
+
+    private static LibraryEntry index(final Path path, final String name, final long modified, final long size) {
+        try {
+            return LibraryEntry.of(name, modified, size, null, Fluke.read(path));
+        } catch (final IOException | RuntimeException ex) {
+            return LibraryEntry.unreadable(name, modified, size, null);
+        }
+    }
+
+    /**
+     * Get the entry for a packed Fluke, reusing the existing entry if the pack has not changed since it was made.
+     */
+    private LibraryEntry indexPacked(final FlukePack pack, final int i, final String name) {
+        final var packName = pack.filename();
+        final var existing = entries.get(name);
+        if (existing != null && packName.equals(existing.pack()) &&
+                existing.modified() == pack.modified() && existing.size() == pack.size())
+            return existing;
+        try {
+            return LibraryEntry.of(name, pack.modified(), pack.size(), packName, pack.read(i));
+        } catch (final IOException | RuntimeException ex) {
+            return LibraryEntry.unreadable(name, pack.modified(), pack.size(), packName);
+        }
+    }
+
+    private static long modifiedNanos(final BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Write the index file. It is overwritten in place rather than replaced, because creating a file would change
+     * the modification time of the directory and defeat the check in refresh on the next startup.
+     * A failure is ignored, since the index will simply be rebuilt.
+     */
+    private void persist() {
+        unsaved = false;
+        final var indexPath = directory.resolve(INDEX_FILENAME);
+        synchronized (LibraryIndex.class) {
+            try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPath)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(directoryModified);
+                out.writeInt(entries.size());
+                for (final var entry : entries.values())
+                    writeEntry(out, entry);
+            } catch (final IOException ex) {
+                // The index is only a cache.
+            }
+        }
+    }
+
+    private static void writeEntry(final DataOutputStream out, final LibraryEntry entry) throws IOException {
+        writeString(out, entry.filename());
+        out.writeLong(entry.modified());
+        out.writeLong(entry.size());
+        out.writeBoolean(entry.isPacked());
+        if (entry.isPacked())
+            writeString(out, entry.pack());
+        out.writeBoolean(entry.isReadable());
+        if (!entry.isReadable())
+            return;
+
+        writeString(out, entry.title());
+        out.writeInt(entry.promptCount());
+        final var slots = entry.slots();
+        out.writeInt(slots.size());
+        for (int i = 0; i < slots.size(); ++i)
+            out.writeInt(slots.get(i));
+    }
+
+    private static LibraryEntry readEntry(final DataInputStream in) throws IOException {
+        final var filename = readString(in);
+        final var modified = in.readLong();
+        final var size = in.readLong();
+        final var pack = in.readBoolean() ? readString(in) : null;
+        if (!in.readBoolean())
+            return LibraryEntry.unreadable(filename, modified, size, pack);
+
+        final var title = readString(in);
+        final var promptCount = in.readInt();
+        final var slotCount = in.readInt();
+        if (slotCount < 0 || slotCount > in.available() / Integer.BYTES)
+            throw new IOException("Invalid slot count in library index: " + slotCount);
+        final var slots = new int[slotCount];
+        for (int i = 0; i < slotCount; ++i)
+            slots[i] = in.readInt();
+        return new LibraryEntry(filename, modified, size, title, promptCount, SlotSet.of(slots), pack);
+    }
+
+    // Strings are written as a length and UTF-8 bytes, since titles may exceed the limit of writeUTF.
+    private static void writeString(final DataOutputStream out, final String text) throws IOException {
+        final var bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final var length = in.readInt();
+        if (length < 0 || length > in.available())
+            throw new IOException("Invalid string length in library index: " + length);
+        final var bytes = in.readNBytes(length);
+        if (bytes.length != length)
+            throw new EOFException();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "LibraryIndex[directory=" + directory + ", entries=" + entries.size() + "]";
+    }
+}
@@ -0,0 +1,192 @@
+package com.vorpal.rosanjintalk.library;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.model.FlukePack;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a LibraryIndex up to date with the flukes directory while the library is on screen, and reports each batch
+ * of changes to a listener, so that the list of files can be updated without walking the directory again.
+ *
+ * On start, the index is refreshed once and the differences are reported. After that, the directory is watched for
+ * files being created, modified, and deleted, including by other programs. Events are coalesced until the directory
+ * has been quiet for QUIET_MILLIS (or for at most MAX_BATCH_MILLIS), and each batch only examines the files named in
+ * it. If the watch service overflows, or a pack changes, the index is refreshed as on start.
+ *
+ * The updates are persisted PERSIST_DELAY_MILLIS after the first one that has not been, and when the watcher is
+ * closed, so that a burst of batches writes the index file once.
+ *
+ * The index is only ever changed on the thread shared by all library refreshes, and the listener is called there:
+ * it is up to the listener to move the changes to the FX thread.
+ */
+public final class LibraryWatcher implements AutoCloseable {
+    private static final long QUIET_MILLIS = 100;
+    private static final long MAX_BATCH_MILLIS = 1000;
+    private static final long PERSIST_DELAY_MILLIS = 5000;
+
+    private static final Executor PERSISTER =
+            CompletableFuture.delayedExecutor(PERSIST_DELAY_MILLIS, TimeUnit.MILLISECONDS, LibraryIndex.REFRESHER);
+
+    private final WatchService watchService;
+    private final Consumer<LibraryChange> listener;
+    private final Consumer<IOException> errorHandler;
+    private volatile boolean closed = false;
+
+    // Only accessed on LibraryIndex.REFRESHER.
+    private LibraryIndex index;
+    private boolean persistScheduled = false;
+
+    private LibraryWatcher(final LibraryIndex index,
+                           final WatchService watchService,
+                           final Consumer<LibraryChange> listener,
+                           final Consumer<IOException> errorHandler) {
+        this.index = index;
+        this.watchService = watchService;
+        this.listener = listener;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Start watching the directory of the given index.
+     * @param index        the index that is currently on display
+     * @param listener     called with each batch of changes that is not empty
+     * @param errorHandler called if the directory cannot be listed
+     * @return the watcher, which must be closed when the library is no longer on display
+     * @throws IOException if the directory cannot be watched
+     */
+    public static LibraryWatcher start(final LibraryIndex index,
+                                       final Consumer<LibraryChange> listener,
+                                       final Consumer<IOException> errorHandler) throws IOException {
+        // Register before refreshing, so that no change is missed between the two.
+        final var watchService = FileSystems.getDefault().newWatchService();
+        try {
+            index.directory().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (final IOException | RuntimeException ex) {
+            watchService.close();
+            throw ex;
+        }
+
+        final var watcher = new LibraryWatcher(index, watchService, listener, errorHandler);
+        LibraryIndex.REFRESHER.execute(watcher::refresh);
+
+        final var thread = new Thread(watcher::watch, "LibraryWatcher");
+        thread.setDaemon(true);
+        thread.start();
+        return watcher;
+    }
+
+    /**
+     * Report that files have changed, e.g. because this program has just added or deleted them, without waiting for
+     * the watch service, which may be slow to notice on some platforms. Reporting a file twice is harmless.
+     * @param filenames the names of the files in the directory that changed
+     */
+    public void filesChanged(final Collection<String> filenames) {
+        final var names = List.copyOf(filenames);
+        LibraryIndex.REFRESHER.execute(() -> update(names));
+    }
+
+    /**
+     * Stop watching the directory. Changes that have not been reported yet are discarded, and those that have are
+     * persisted.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (final IOException ex) {
+            // Nothing more can be done.
+        }
+        LibraryIndex.REFRESHER.execute(this::persist);
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                final var changed = new HashSet<String>();
+                var refreshAll = false;
+
+                var key = watchService.take();
+                final var batchStart = System.nanoTime();
+                while (key != null) {
+                    for (final var event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                            refreshAll = true;
+                        else if (event.context() instanceof Path path) {
+                            final var name = path.getFileName().toString();
+                            if (name.endsWith(LibraryIndex.FLUKE_EXTENSION))
+                                changed.add(name);
+                            else if (name.endsWith(FlukePack.PACK_EXTENSION))
+                                refreshAll = true;
+                        }
+                    }
+
+                    // The directory itself is no longer accessible: there is nothing left to watch.
+                    if (!key.reset())
+                        return;
+
+                    final var elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStart);
+                    key = elapsed < MAX_BATCH_MILLIS ? watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (refreshAll)
+                    LibraryIndex.REFRESHER.execute(this::refresh);
+                else if (!changed.isEmpty())
+                    LibraryIndex.REFRESHER.execute(() -> update(changed));
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException ex) {
+            // The watcher has been closed.
+        }
+    }
+
+    private void refresh() {
+        if (closed)
+            return;
+        try {
+            final var refreshed = index.refresh();
+            report(LibraryChange.between(index, refreshed));
+        } catch (final IOException ex) {
+            if (!closed)
+                errorHandler.accept(ex);
+        }
+    }
+
+    private void update(final Collection<String> filenames) {
+        if (closed)
+            return;
+        final var change = index.update(filenames);
+        report(change);
+        if (!change.isEmpty() && !persistScheduled) {
+            persistScheduled = true;
+            PERSISTER.execute(this::persist);
+        }
+    }
+
+    private void persist() {
+        persistScheduled = false;
+        index.flush();
+    }
+
+    private void report(final LibraryChange change) {
+        index = change.index();
+        if (!closed && !change.isEmpty())
+            listener.accept(change);
+    }
+}
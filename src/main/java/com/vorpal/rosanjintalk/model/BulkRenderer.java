@@ -0,0 +1,181 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Renders many sets of answers against one Fluke in parallel.
+ *
+ * Every render shares the Templates compiled once on the Fluke, and the answers should be created from
+ * fluke.inputs() with SlotTable.withValues so that they also share the ordinal binding of the Templates.
+ *
+ * The answers are pulled from the source only as fast as they are rendered: at most window renders are
+ * outstanding at any time, so an arbitrarily long source is rendered in bounded memory. The results are passed
+ * to the sink on the calling thread, either in the order of the source or in the order in which they finish.
+ *
+ * If a render fails, e.g. because an answer is empty or contains a term blocked by the WordFilter, no more answers
+ * are pulled and a RenderFailure is thrown once the failed render is reached; renders that are already outstanding
+ * are left to finish in the background.
+ */
+public final class BulkRenderer {
+    private final Fluke fluke;
+    private final Executor executor;
+    private final int window;
+    private final boolean ordered;
+    private final WordFilter filter;
+
+    /**
+     * Thrown when one of the sets of answers cannot be rendered.
+     */
+    public static final class RenderFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public final long index;
+
+        public RenderFailure(final long index, final RuntimeException cause) {
+            super("Could not render answer set " + index + ": " + cause.getMessage(), cause);
+            this.index = index;
+        }
+    }
+
+    /**
+     * Create a BulkRenderer that uses the common ForkJoinPool, with a window of four renders per core.
+     * @param fluke   the Fluke to render
+     * @param ordered true if the results should be passed to the sink in the order of the source
+     */
+    public BulkRenderer(final Fluke fluke, final boolean ordered) {
+        this(fluke, ForkJoinPool.commonPool(), 4 * ForkJoinPool.getCommonPoolParallelism(), ordered);
+    }
+
+    /**
+     * @param fluke    the Fluke to render
+     * @param executor the executor that performs the renders
+     * @param window   the maximum number of renders that may be outstanding at once
+     * @param ordered  true if the results should be passed to the sink in the order of the source
+     */
+    public BulkRenderer(final Fluke fluke,
+                        final Executor executor,
+                        final int window,
+                        final boolean ordered) {
+        this(fluke, executor, window, ordered, WordFilter.NONE);
+    }
+
+    /**
+     * @param fluke    the Fluke to render
+     * @param executor the executor that performs the renders
+     * @param window   the maximum number of renders that may be outstanding at once
+     * @param ordered  true if the results should be passed to the sink in the order of the source
+     * @param filter   the filter that every answer is checked against before it is rendered
+     */
+    public BulkRenderer(final Fluke fluke,
+                        final Executor executor,
+                        final int window,
+                        final boolean ordered,
+                        final WordFilter filter) {
+        if (window < 1)
+            throw new IllegalArgumentException("The window must be positive: " + window);
+        this.fluke = Objects.requireNonNull(fluke);
+        this.executor = Objects.requireNonNull(executor);
+        this.window = window;
+        this.ordered = ordered;
+        this.filter = Objects.requireNonNull(filter);
+
+        // Compile the title now so that the renders do not race to compile it.
+        fluke.titleTemplate();
+    }
+
+    /**
+     * Render every set of answers in the stream.
+     * @param answers the sets of answers
+     * @param sink    receives each rendered story on the calling thread
+     * @throws RenderFailure if a set of answers cannot be rendered
+     */
+    public void render(final Stream<SlotTable> answers, final Consumer<? super RenderedStory> sink) {
+        render(answers.iterator(), sink);
+    }
+
+    /**
+     * Render every set of answers in the iterable.
+     * @param answers the sets of answers
+     * @param sink    receives each rendered story on the calling thread
+     * @throws RenderFailure if a set of answers cannot be rendered
+     */
+    public void render(final Iterable<SlotTable> answers, final Consumer<? super RenderedStory> sink) {
+        render(answers.iterator(), sink);
+    }
+
+    /**
+     * Render every set of answers from the iterator. The iterator is only called from the calling thread.
+     * @param answers the sets of answers
+     * @param sink    receives each rendered story on the calling thread
+     * @throws RenderFailure if a set of answers cannot be rendered
+     */
+    public void render(final Iterator<SlotTable> answers, final Consumer<? super RenderedStory> sink) {
+        // In order, the futures are queued as they are submitted. Otherwise, they are queued as they complete.
+        final BlockingQueue<CompletableFuture<RenderedStory>> pending = new LinkedBlockingQueue<>(window);
+        int outstanding = 0;
+        long index = 0;
+
+        while (answers.hasNext()) {
+            // Apply backpressure: wait for a result before submitting more than the window allows.
+            if (outstanding == window) {
+                sink.accept(next(pending));
+                --outstanding;
+            }
+
+            final var i = index++;
+            final var table = answers.next();
+            final var future = CompletableFuture.supplyAsync(() -> renderOne(i, table), executor);
+            if (ordered)
+                pending.add(future);
+            else
+                future.whenComplete((result, ex) -> pending.add(future));
+            ++outstanding;
+        }
+
+        while (outstanding > 0) {
+            sink.accept(next(pending));
+            --outstanding;
+        }
+    }
+
+    private RenderedStory renderOne(final long index, final SlotTable answers) {
+        try {
+            filter.check(answers);
+            return new RenderedStory(index, fluke.substituteTitle(answers), fluke.substituteStory(answers));
+        } catch (final RuntimeException ex) {
+            throw new RenderFailure(index, ex);
+        }
+    }
+
+    /**
+     * Wait for the next result in the queue and return it, rethrowing the failure of the render if it failed.
+     */
+    private RenderedStory next(final BlockingQueue<CompletableFuture<RenderedStory>> pending) {
+        final CompletableFuture<RenderedStory> future;
+        try {
+            future = pending.take();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(ex);
+        }
+
+        try {
+            return future.join();
+        } catch (final CompletionException ex) {
+            if (ex.getCause() instanceof RenderFailure failure)
+                throw failure;
+            throw ex;
+        }
+    }
+}
@@ -3,14 +3,23 @@ package com.vorpal.rosanjintalk.model;
 // By Sebastian Raaphorst, 2023.
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.vorpal.rosanjintalk.shared.Shared;
 
 /**
@@ -18,44 +27,252 @@ import com.vorpal.rosanjintalk.shared.Shared;
  * It contains the required prompts with their substitution number and the story
  * in which to make the substitutions.
  *
- * @param title   The title of the story.
- * @param inputs The list of inputs to the story for substitution. Key 1, for example, will prompt inputs[1] and then
- *               substitute any occurrences of "{1}" in the story. with the response.
+ * The title and story are compiled into Templates at most once per Fluke: the story when the Fluke is
+ * validated on construction, and the title the first time it is needed. Validation, rendering, and the
+ * substitution queries all share these, so playing the same Fluke repeatedly never rescans the text.
+ * A Fluke read from a binary file instead keeps its story encoded, with the segment table that was saved with it,
+ * until the story is first needed (see FlukeFormat). If the file records where its story starts, only the header
+ * with the title and prompts is read, and the story is left in the file until then.
+ *
+ * The prompts are stored densely in a SlotTable, and answers are a SlotTable created from the prompts with
+ * SlotTable.withValues, so rendering addresses answers by ordinal rather than hashing substitution indices.
+ *
+ * This was originally a record, but a record cannot hold the cached Templates. The accessors, equality,
+ * and JSON representation are the same as they were for the record, except that inputs is a SlotTable.
+ * JSON is read and written by FlukeJsonCodec.
  */
-public record Fluke(String filename, String title, Map<Integer, String> inputs, String story) {
-    public Fluke {
-        Objects.requireNonNull(filename);
-        Objects.requireNonNull(title);
-        Objects.requireNonNull(inputs);
-        Objects.requireNonNull(story);
-
-        if (isInvalid(inputs.keySet(), story))
+public final class Fluke {
+    // The size of the buffers used when streaming a Fluke or a rendered story to a stream or channel.
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    // The number of bytes read first from a file, which holds the whole header of a typical binary Fluke.
+    private static final int HEADER_BLOCK_SIZE = 4096;
+
+    private final String filename;
+    private final String title;
+    private final SlotTable inputs;
+    private final StoryBody body;
+    private volatile Template titleTemplate;
+
+    /**
+     * @param filename The name of the file in the fluke directory.
+     * @param title    The title of the story.
+     * @param inputs   The list of inputs to the story for substitution. Key 1, for example, will prompt inputs[1]
+     *                 and then substitute any occurrences of "{1}" in the story. with the response.
+     * @param story    The story into which the substitutions are made.
+     */
+    public Fluke(final String filename,
+                 final String title,
+                 final SlotTable inputs,
+                 final String story) {
+        this(filename, null, title, inputs, Template.compile(Objects.requireNonNull(story)));
+    }
+
+    /**
+     * A constructor where the inputs are a map from substitution index to prompt, as they are in JSON.
+     */
+    public Fluke(final String filename,
+                 final String title,
+                 final Map<Integer, String> inputs,
+                 final String story) {
+        this(filename, title, SlotTable.of(Objects.requireNonNull(inputs)), story);
+    }
+
+    private Fluke(final String filename,
+                  final Template titleTemplate,
+                  final String title,
+                  final SlotTable inputs,
+                  final Template storyTemplate) {
+        this(filename, titleTemplate, title, inputs, StoryBody.of(storyTemplate));
+
+        final var overflow = titleTemplate().overflow();
+        if (overflow != null)
+            throw new RuntimeException("The substitution " + overflow + " in the title is too large.");
+        if (storyTemplate.overflow() != null)
+            throw new RuntimeException("The substitution " + storyTemplate.overflow() + " in the story body is too large.");
+        if (!storyTemplate.isCoveredBy(inputs.keys()))
             throw new RuntimeException("There are substitutions in the story body that are not in the inputs.");
     }
 
-    public static final ObjectMapper MAPPER = new ObjectMapper()
-            .configure(SerializationFeature.INDENT_OUTPUT, true);
+    private Fluke(final String filename,
+                  final Template titleTemplate,
+                  final String title,
+                  final SlotTable inputs,
+                  final StoryBody body) {
+        this.filename = Objects.requireNonNull(filename);
+        this.title = Objects.requireNonNull(title);
+        this.inputs = Objects.requireNonNull(inputs);
+        this.body = body;
+        this.titleTemplate = titleTemplate;
+    }
+
+    /**
+     * Create a Fluke whose story was read from a binary file, which was validated when it was saved.
+     * @param filename the name of the file in the fluke directory
+     * @param title    the title
+     * @param inputs   the prompts for the substitutions, which cover the substitutions in the story
+     * @param body     the encoded story
+     * @return the Fluke
+     */
+    static Fluke decoded(final String filename,
+                         final String title,
+                         final SlotTable inputs,
+                         final StoryBody body) {
+        return new Fluke(filename, null, title, inputs, body);
+    }
+
+    /**
+     * Create a Fluke from a title and story that have already been compiled, e.g. by the editor.
+     * @param filename the name of the file in the fluke directory
+     * @param title    the compiled title
+     * @param inputs   the prompts for the substitutions
+     * @param story    the compiled story
+     * @return the Fluke
+     */
+    public static Fluke of(final String filename,
+                           final Template title,
+                           final SlotTable inputs,
+                           final Template story) {
+        return new Fluke(filename, title, title.source(), inputs, story);
+    }
+
+    public String filename() {
+        return filename;
+    }
+
+    public String title() {
+        return title;
+    }
+
+    public SlotTable inputs() {
+        return inputs;
+    }
+
+    public String story() {
+        return body.template().source();
+    }
+
+    /**
+     * The compiled title, which is compiled the first time it is requested.
+     * @return the title Template
+     */
+    public Template titleTemplate() {
+        var result = titleTemplate;
+        if (result == null) {
+            result = Template.compile(title);
+            titleTemplate = result;
+        }
+        return result;
+    }
+
+    /**
+     * The compiled story. If it was left in its file when the Fluke was read, it is read now.
+     * @return the story Template
+     * @throws java.io.UncheckedIOException if the story cannot be read from its file, or the file has changed
+     */
+    public Template storyTemplate() {
+        return body.template();
+    }
+
+    /**
+     * The distinct substitutions used in the story. Unlike storyTemplate, this does not decode a story that was
+     * read from a binary file.
+     * @return the set of substitution indices in the story
+     */
+    public SlotSet storySlots() {
+        return body.distinctSlots();
+    }
+
+    /**
+     * The story, for estimating the memory that this Fluke retains without decoding it.
+     * @return the story body
+     */
+    StoryBody body() {
+        return body;
+    }
+
+    /**
+     * Get all substitutions used in the title and the story of this Fluke.
+     * @return an unmodifiable set of the indices of the substitutions
+     */
+    public Set<Integer> substitutions() {
+        return titleTemplate().distinctSlots().union(body.distinctSlots()).toSet();
+    }
+
+    /**
+     * The set of input keys that are not used in the title or story of this Fluke.
+     * @return the set of unused keys
+     */
+    public Set<Integer> unusedKeys() {
+        final var substitutionKeys = titleTemplate().distinctSlots().union(body.distinctSlots());
+        return inputs.keys().difference(substitutionKeys).toSet();
+    }
+
+    /**
+     * Substitute the answers into the title of this Fluke.
+     * @param answers the answers provided by the player, created from inputs() with SlotTable.withValues
+     * @return the title with the answers substituted in
+     */
+    public String substituteTitle(final SlotTable answers) {
+        return substitute(answers, titleTemplate());
+    }
+
+    /**
+     * Substitute the answers into the story of this Fluke.
+     * @param answers the answers provided by the player, created from inputs() with SlotTable.withValues
+     * @return the story with the answers substituted in
+     */
+    public String substituteStory(final SlotTable answers) {
+        return substitute(answers, storyTemplate());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Fluke other)) return false;
+        return filename.equals(other.filename) &&
+                title.equals(other.title) &&
+                inputs.equals(other.inputs) &&
+                story().equals(other.story());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filename, title, inputs, story());
+    }
+
+    @Override
+    public String toString() {
+        return "Fluke[filename=" + filename + ", title=" + title + ", inputs=" + inputs + ", story=" + story() + "]";
+    }
 
     public static Fluke fromJson(final String json) throws IOException {
-        return MAPPER.readValue(json, Fluke.class);
+        return FlukeJsonCodec.decode(json);
     }
 
-    public String toJson() throws JsonProcessingException {
-        return MAPPER.writeValueAsString(this);
+    public String toJson() {
+        return FlukeJsonCodec.encode(this);
     }
 
     /**
-     * Save the contents as a zipped file of JSON as a .fluke file.
+     * Save the contents as a .fluke file in the binary format in the fluke directory.
      */
     public void save() {
+        save(FlukeFormat.BINARY);
+    }
+
+    /**
+     * Save the contents as a .fluke file in the given format in the fluke directory.
+     * @param format the format in which to save the file
+     */
+    public void save(final FlukeFormat format) {
         final var flukeFilename = filename.endsWith(".fluke") ? filename : filename + ".fluke";
         final var path = Objects.requireNonNull(Shared.getFlukePath());
         final var flukePath = path.resolve(flukeFilename);
 
         try {
-            Files.write(flukePath, toJson().getBytes());
-        } catch (final JsonProcessingException e) {
-            Shared.unrecoverableError("Could not convert into output format.");
+            write(flukePath, format);
+            FlukeCache.shared().invalidate(flukePath);
         } catch (final IOException e) {
             Shared.unrecoverableError("Could not write file:\n\n" + flukeFilename +
                     "\n\nto path:\n\n" + path);
@@ -63,17 +280,15 @@ public record Fluke(String filename, String title, Map<Integer, String> inputs,
     }
 
     /**
-     * Open a file from the fluke directory. Should end with .fluke.
+     * Open a file from the fluke directory, or a Fluke of that name in a pack there. Should end with .fluke.
      * @param flukeFilename The file to open from the fluke directory.
      * @return A Fluke object representing the file.
      */
     public static Fluke load(final String flukeFilename) {
         final var path = Shared.getFlukePath();
         Objects.requireNonNull(path);
-        final var flukePath = path.resolve(flukeFilename);
         try {
-            final var json = Files.readString(flukePath);
-            return fromJson(json);
+            return find(path, flukeFilename);
         } catch (final IOException e) {
             Shared.unrecoverableError("Could not read file:\n\n" + flukeFilename);
             // We will never reach this point.
@@ -81,6 +296,158 @@ public record Fluke(String filename, String title, Map<Integer, String> inputs,
         }
     }
 
+    /**
+     * Find a Fluke in a directory by its filename: in its own file if there is one, which is looked up in the shared
+     * FlukeCache, and otherwise in the first pack in the directory that holds it (see FlukePack).
+     * Unlike load, this does not report errors to the user.
+     * @param directory     the directory, usually the fluke directory
+     * @param flukeFilename the filename of the Fluke
+     * @return the Fluke
+     * @throws NoSuchFileException if there is neither a file nor a packed Fluke with the filename
+     * @throws IOException         if the Fluke cannot be read or is not valid
+     */
+    public static Fluke find(final Path directory, final String flukeFilename) throws IOException {
+        final var flukePath = directory.resolve(flukeFilename);
+        try {
+            return FlukeCache.shared().get(flukePath);
+        } catch (final NoSuchFileException ex) {
+            for (final var pack : FlukePack.inDirectory(directory)) {
+                final var fluke = pack.find(flukeFilename);
+                if (fluke != null)
+                    return fluke;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Read a Fluke from any file. Unlike load, this does not involve the fluke directory or report errors
+     * to the user, so it can be used without JavaFX, e.g. from the command line.
+     *
+     * If the file is binary and records where its story starts, only its header is read: the story is read when
+     * it is first needed, provided the file has not changed by then (see storyTemplate).
+     * @param flukePath the path of the file
+     * @return A Fluke object representing the file.
+     * @throws IOException if the file cannot be read or does not represent a valid Fluke
+     */
+    public static Fluke read(final Path flukePath) throws IOException {
+        // Examined before the file is read, so that any change while reading it is detected when the story is.
+        final var attributes = Files.readAttributes(flukePath, BasicFileAttributes.class);
+        try (final var channel = FileChannel.open(flukePath, StandardOpenOption.READ)) {
+            final var head = readAt(channel, 0, HEADER_BLOCK_SIZE);
+
+            // JSON is parsed as it streams in.
+            return switch (FlukeFormat.detect(head)) {
+                case BINARY -> readBinary(flukePath, attributes, channel, head);
+                case JSON -> FlukeJsonCodec.decode(Channels.newInputStream(channel.position(0)));
+                case DEFLATED_JSON -> readDeflatedJson(Channels.newInputStream(channel.position(0)));
+            };
+        }
+    }
+
+    /**
+     * Binary Flukes keep the encoded story, so just the header is read, up to where the file records that it ends.
+     * @param head the first bytes of the file
+     */
+    private static Fluke readBinary(final Path flukePath,
+                                    final BasicFileAttributes attributes,
+                                    final FileChannel channel,
+                                    final ByteBuffer head) throws IOException {
+        final var bodyOffset = FlukeBinaryCodec.bodyOffset(head);
+        if (bodyOffset > attributes.size())
+            throw new IOException("Invalid body offset: " + bodyOffset);
+
+        final var header = bodyOffset <= head.limit() ? head : readAt(channel, 0, bodyOffset);
+        return FlukeBinaryCodec.decodeHeader(header, flukePath,
+                attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), attributes.size());
+    }
+
+    /**
+     * Read a Fluke from the contents of a .fluke file in any format.
+     * A binary Fluke keeps a view of the buffer for its story, so the buffer must not be modified afterwards.
+     * @param buffer the contents of the file, from position to limit
+     * @return A Fluke object representing the contents.
+     * @throws IOException if the contents do not represent a valid Fluke
+     */
+    public static Fluke decode(final ByteBuffer buffer) throws IOException {
+        return switch (FlukeFormat.detect(buffer)) {
+            case BINARY -> FlukeBinaryCodec.decode(buffer);
+            case JSON -> FlukeJsonCodec.decode(inputStream(buffer));
+            case DEFLATED_JSON -> readDeflatedJson(inputStream(buffer));
+        };
+    }
+
+    /**
+     * Read up to length bytes from the given position of a file, or fewer if it ends first.
+     */
+    private static ByteBuffer readAt(final FileChannel channel, final long position, final int length) throws IOException {
+        final var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // Keep reading until the buffer is full or the file ends.
+        }
+        return buffer.flip();
+    }
+
+    private static InputStream inputStream(final ByteBuffer buffer) {
+        if (buffer.hasArray())
+            return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        final var bytes = new byte[buffer.remaining()];
+        buffer.get(buffer.position(), bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * Decompress and parse JSON as it is read from the stream, which is closed afterwards.
+     */
+    private static Fluke readDeflatedJson(final InputStream in) throws IOException {
+        final var inflater = new Inflater();
+        try {
+            return FlukeJsonCodec.decode(new InflaterInputStream(in, inflater, STREAM_BUFFER_SIZE));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Write this Fluke to any file. Unlike save, this does not involve the fluke directory or report errors.
+     * @param flukePath the path of the file
+     * @param format    the format in which to write the file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(final Path flukePath, final FlukeFormat format) throws IOException {
+        // The story may still be in the file that is about to be overwritten.
+        storyTemplate();
+        try (final var channel = FileChannel.open(flukePath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             final var out = new BufferedOutputStream(Channels.newOutputStream(channel), STREAM_BUFFER_SIZE)) {
+            encode(out, format);
+        }
+    }
+
+    /**
+     * Write this Fluke to a stream in the given format, without building the encoded Fluke in memory.
+     * @param out    the stream, which is flushed but not closed
+     * @param format the format in which to write the Fluke
+     * @throws IOException if the stream fails
+     */
+    public void encode(final OutputStream out, final FlukeFormat format) throws IOException {
+        switch (format) {
+            case BINARY -> FlukeBinaryCodec.encode(this, out);
+            case JSON -> FlukeJsonCodec.encode(this, out);
+            case DEFLATED_JSON -> {
+                final var deflater = new Deflater();
+                try {
+                    final var compressed = new DeflaterOutputStream(out, deflater, STREAM_BUFFER_SIZE);
+                    FlukeJsonCodec.encode(this, compressed);
+                    compressed.finish();
+                } finally {
+                    deflater.end();
+                }
+            }
+        }
+        out.flush();
+    }
+
     /**
      * Determine if this represents a valid RosanjinTalk, i.e. all entries of the form {#}
      * in the story are covered by the inputs.
@@ -90,8 +457,7 @@ public record Fluke(String filename, String title, Map<Integer, String> inputs,
      * @return true if for every {#} entry in the story, there is an entry in the inputKeys
      */
     public static boolean isInvalid(final Set<Integer> inputKeys, final String story) {
-        final var requiredSubstitutions = substitutions(story);
-        return !inputKeys.containsAll(requiredSubstitutions);
+        return !Template.compile(story).isCoveredBy(inputKeys);
     }
 
     /**
@@ -101,28 +467,17 @@ public record Fluke(String filename, String title, Map<Integer, String> inputs,
      * @return a set of the indices of the substitutions
      */
     public static Set<Integer> allSubstituations(final String title, final String story) {
-        final var substitutions = substitutions(title);
-        final var storySubstitutions = substitutions(story);
-        substitutions.addAll(storySubstitutions);
-        return substitutions;
+        return allSubstituations(Template.compile(title), Template.compile(story));
     }
+
     /**
-     * Static method to retrieve the substitutions from a body of story.
-     * These are the numbers that are of the form {#}, i.e. between curly braces.
-     *
-     * @param string the string to scan for substitution entries
-     * @return a set of the substitution entries found in the string
+     * Get all substitutions in a compiled title and story.
+     * @param title the title Template
+     * @param story the story Template
+     * @return a set of the indices of the substitutions
      */
-    private static Set<Integer> substitutions(final String string) {
-        // Retrieve all the {#} entries from the story.
-        final var substitutions = new HashSet<Integer>();
-
-        // Traverse the story and get all the {#} entries.
-        final var pattern = Pattern.compile("(?<=\\{)(\\d+)(?=})");
-        final var matcher = pattern.matcher(string);
-        while (matcher.find())
-            substitutions.add(Integer.parseInt(matcher.group()));
-        return substitutions;
+    public static Set<Integer> allSubstituations(final Template title, final Template story) {
+        return new HashSet<>(title.distinctSlots().union(story.distinctSlots()).toSet());
     }
 
     /**
@@ -137,12 +492,22 @@ public record Fluke(String filename, String title, Map<Integer, String> inputs,
     public static Set<Integer> unusedKeys(final Set<Integer> inputKeys,
                                           final String title,
                                           final String story) {
-        final var substitutionKeys = allSubstituations(title, story);
+        return unusedKeys(inputKeys, Template.compile(title), Template.compile(story));
+    }
 
-        return inputKeys
-                .stream()
-                .filter(k -> !substitutionKeys.contains(k))
-                .collect(Collectors.toUnmodifiableSet());
+    /**
+     * This returns the set of unused keys in inputKeys for a compiled title and story.
+     *
+     * @param inputKeys the set of keys that are in the inputs
+     * @param title     the title Template
+     * @param story     the story Template
+     * @return the set of keys which appear in the inputKeys but not in the story
+     */
+    public static Set<Integer> unusedKeys(final Set<Integer> inputKeys,
+                                          final Template title,
+                                          final Template story) {
+        final var substitutionKeys = title.distinctSlots().union(story.distinctSlots());
+        return SlotSet.copyOf(inputKeys).difference(substitutionKeys).toSet();
     }
 
     /**
@@ -155,33 +520,115 @@ public record Fluke(String filename, String title, Map<Integer, String> inputs,
      * @return a string with the answers substituted into the story
      */
     public static String substitute(final Map<Integer, String> inputs, final String text) {
+        return substitute(SlotTable.of(inputs), Template.compile(text));
+    }
+
+    /**
+     * Given a set of answers for the inputs to this RosanjinTalk, make the substitutions into
+     * an already compiled Template.
+     * If there are any missing entries, a RuntimeException is thrown.
+     * If there are any empty entries, an InputEmptyException is thrown.
+     *
+     * @param inputs   the answers provided by the player
+     * @param template the compiled text into which to make the substitutions
+     * @return a string with the answers substituted into the text
+     */
+    public static String substitute(final SlotTable inputs, final Template template) {
+        return template.render(prepareAnswers(inputs, template));
+    }
+
+    /**
+     * Check that the answers cover a Template and strip them.
+     * If there are any missing entries, a RuntimeException is thrown.
+     * If there are any empty entries, an InputEmptyException is thrown.
+     *
+     * @param inputs   the answers provided by the player
+     * @param template the compiled text into which the answers will be substituted
+     * @return the stripped answers
+     */
+    private static SlotTable prepareAnswers(final SlotTable inputs, final Template template) {
         // We shouldn't need to check for validation at this point, but we do just in case.
-        if (isInvalid(inputs.keySet(), text))
+        if (!template.isCoveredBy(inputs.keys()))
             throw new RuntimeException("The input set is not valid for the Fluke.");
 
         // strip all the Strings in the answers.
-        final var strippedAnswers = inputs.entrySet()
-                .stream()
-                .map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().strip()))
-                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+        final var strippedAnswers = inputs.strip();
 
         // If there is an empty entry, then we throw an exception indicating the first empty key.
-        strippedAnswers.entrySet()
-                .stream()
-                .filter(entry -> entry.getValue().isEmpty())
-                .map(Map.Entry::getKey)
-                .sorted()
-                .findFirst()
-                .ifPresent(key -> {
-                    throw new InputEmptyException(key);
-                });
-
-        // Otherwise, substitute the strings. I forgot how terrible Java programming is after Kotlin.
-        // No decent fold expression, so we just have to do this the hard way.
-        var substitutedText = text;
-        for (final var entry : strippedAnswers.entrySet())
-            substitutedText = substitutedText.replace("{" + entry.getKey() + "}", entry.getValue());
-        return substitutedText;
+        // The ordinals are in ascending order of substitution index, so the first one found is the first key.
+        for (int ordinal = 0; ordinal < strippedAnswers.size(); ++ordinal)
+            if (strippedAnswers.value(ordinal).isEmpty())
+                throw new InputEmptyException(strippedAnswers.slot(ordinal));
+
+        return strippedAnswers;
     }
-}
 
+    /**
+     * Stream the formatted story for a set of answers to a Writer: the title, two platform-dependent line breaks,
+     * and the story followed by a line break. The rendered title and story are never built in memory.
+     * If there are any missing entries, a RuntimeException is thrown.
+     * If there are any empty entries, an InputEmptyException is thrown.
+     *
+     * @param answers the answers provided by the player, created from inputs() with SlotTable.withValues
+     * @param out     the Writer to which to write the story, which is neither flushed nor closed
+     * @throws IOException if the Writer fails
+     */
+    public void writeStory(final SlotTable answers, final Writer out) throws IOException {
+        // The answers are stripped and checked for empty entries once, for the story; the title only needs to be
+        // covered by them.
+        final var title = titleTemplate();
+        if (!title.isCoveredBy(answers.keys()))
+            throw new RuntimeException("The input set is not valid for the Fluke.");
+        final var story = storyTemplate();
+        final var strippedAnswers = prepareAnswers(answers, story);
+
+        final var lineSep = System.lineSeparator();
+        title.renderTo(strippedAnswers, out);
+        out.write(lineSep);
+        out.write(lineSep);
+        story.renderTo(strippedAnswers, out);
+        out.write(lineSep);
+    }
+
+    /**
+     * Stream the story alone, without the title, for a set of answers to a Writer, e.g. to page it for display.
+     * The rendered story is never built in memory.
+     * If there are any missing entries, a RuntimeException is thrown.
+     * If there are any empty entries, an InputEmptyException is thrown.
+     *
+     * @param answers the answers provided by the player, created from inputs() with SlotTable.withValues
+     * @param out     the Writer to which to write the story, which is neither flushed nor closed
+     * @throws IOException if the Writer fails
+     */
+    public void writeStoryText(final SlotTable answers, final Writer out) throws IOException {
+        final var story = storyTemplate();
+        story.renderTo(prepareAnswers(answers, story), out);
+    }
+
+    /**
+     * Stream the formatted story for a set of answers to an OutputStream in UTF-8 through a bounded buffer.
+     * @param answers the answers provided by the player, created from inputs() with SlotTable.withValues
+     * @param out     the stream to which to write the story, which is flushed but not closed
+     * @throws IOException if the stream fails
+     * @see #writeStory(SlotTable, Writer)
+     */
+    public void writeStory(final SlotTable answers, final OutputStream out) throws IOException {
+        final var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+        writeStory(answers, writer);
+        writer.flush();
+    }
+
+    /**
+     * Stream the formatted story for a set of answers to a channel in UTF-8 through a bounded buffer.
+     * @param answers the answers provided by the player, created from inputs() with SlotTable.withValues
+     * @param out     the channel to which to write the story, which is not closed
+     * @throws IOException if the channel fails
+     * @see #writeStory(SlotTable, Writer)
+     */
+    public void writeStory(final SlotTable answers, final WritableByteChannel out) throws IOException {
+        final var encoder = StandardCharsets.UTF_8.newEncoder();
+        final var writer = new BufferedWriter(Channels.newWriter(out, encoder, STREAM_BUFFER_SIZE), STREAM_BUFFER_SIZE);
+        writeStory(answers, writer);
+        writer.flush();
+    }
+}
@@ -0,0 +1,296 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Reads and writes Flukes in the binary .fluke format. All integers are big-endian, and strings are an int length
+ * in bytes followed by that many bytes of UTF-8.
+ *
+ * magic        4 bytes  "FLKB"
+ * version      short    1
+ * flags        short    0; reserved
+ * body offset  int      the offset of the body from the magic, i.e. the length of the header
+ * filename     string
+ * title        string
+ * prompts      int count, then count pairs of (int substitution index, string prompt), in ascending index order
+ * story slots  int count, then count ints: the distinct substitutions in the story, in ascending order
+ * story        int n slot references, int length in chars, long length in bytes of UTF-8
+ * body         the segment table (n + 1 int literal starts, n + 1 int literal ends, and n int slots) followed by
+ *              the UTF-8 bytes of the story, compressed together as a zlib stream that runs to the end
+ *
+ * The body is last, so that everything before it can be read without touching it, and it is decoded lazily.
+ * Since the body offset is at a fixed position, a file can be loaded by reading only its header, leaving the body
+ * in the file until the story is needed (see decodeHeader).
+ * The body is compressed when it is written, since it is nearly all of the file and both text and segment tables
+ * compress several-fold. Since the segment table is saved, the story is neither scanned nor validated when it is
+ * loaded: only the structure of the header is checked, and that the story slots are covered by the prompts.
+ */
+public final class FlukeBinaryCodec {
+    private static final int MAGIC = 0x464C4B42;
+    private static final short VERSION = 1;
+
+    // The magic, version, flags, and body offset, which are all that is needed to find the body.
+    static final int PREAMBLE_SIZE = 12;
+
+    // The largest piece of the story that is passed to the encoder at once.
+    private static final int WRITE_CHUNK = 8192;
+
+    private FlukeBinaryCodec() {
+    }
+
+    /**
+     * Determine if a buffer starts with the magic bytes of the binary format.
+     * @param head the start of the file, from position to limit, which is not modified
+     * @return true if the buffer starts with the magic bytes
+     */
+    static boolean hasMagic(final ByteBuffer head) {
+        return head.remaining() >= Integer.BYTES && head.getInt(head.position()) == MAGIC;
+    }
+
+    /**
+     * Write a Fluke in the binary format, with its body compressed. The story is encoded and compressed as it is
+     * written, so it is never copied in full. Since the compressed body runs to the end, nothing may follow it
+     * in the stream unless the reader is given its length some other way.
+     * @param fluke the Fluke to write
+     * @param out   the stream to write to, which is flushed but not closed
+     * @throws IOException if the stream fails
+     */
+    public static void encode(final Fluke fluke, final OutputStream out) throws IOException {
+        // The header is small, and is built first to find the body offset.
+        final var header = new ByteArrayOutputStream();
+        final var data = new DataOutputStream(header);
+        writeString(data, fluke.filename());
+        writeString(data, fluke.title());
+
+        final var inputs = fluke.inputs();
+        data.writeInt(inputs.size());
+        for (int ordinal = 0; ordinal < inputs.size(); ++ordinal) {
+            data.writeInt(inputs.slot(ordinal));
+            writeString(data, inputs.value(ordinal));
+        }
+
+        final var template = fluke.storyTemplate();
+        final var distinctSlots = template.distinctSlots();
+        data.writeInt(distinctSlots.size());
+        for (int i = 0; i < distinctSlots.size(); ++i)
+            data.writeInt(distinctSlots.get(i));
+
+        final var references = template.slotCount();
+        final var story = template.source();
+        data.writeInt(references);
+        data.writeInt(story.length());
+        data.writeLong(utf8Length(story));
+
+        final var preamble = new DataOutputStream(out);
+        preamble.writeInt(MAGIC);
+        preamble.writeShort(VERSION);
+        preamble.writeShort(0);
+        preamble.writeInt(PREAMBLE_SIZE + header.size());
+        header.writeTo(out);
+
+        final var deflater = new Deflater();
+        try {
+            final var compressed = new DeflaterOutputStream(out, deflater, WRITE_CHUNK);
+            final var segments = new DataOutputStream(compressed);
+            for (int i = 0; i <= references; ++i)
+                segments.writeInt(template.literalStart(i));
+            for (int i = 0; i <= references; ++i)
+                segments.writeInt(template.literalEnd(i));
+            for (int i = 0; i < references; ++i)
+                segments.writeInt(template.slot(i));
+            segments.flush();
+
+            final var writer = new OutputStreamWriter(compressed, StandardCharsets.UTF_8);
+            for (int position = 0; position < story.length(); position += WRITE_CHUNK)
+                writer.write(story, position, Math.min(WRITE_CHUNK, story.length() - position));
+            writer.flush();
+            compressed.finish();
+            out.flush();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Read a Fluke in the binary format. The story is not decoded: the Fluke keeps a view of its bytes in the buffer
+     * until the story is first needed, so the buffer must not be modified afterwards.
+     * @param buffer the file, from position to limit, which must end where the Fluke does if its body is compressed;
+     *               its position is moved past the Fluke
+     * @return the Fluke
+     * @throws IOException if the buffer does not hold a valid binary Fluke
+     */
+    public static Fluke decode(final ByteBuffer buffer) throws IOException {
+        return decode(buffer, null, 0, 0);
+    }
+
+    /**
+     * Find the body of a binary Fluke from the start of its file.
+     * @param head the start of the file, from position to limit, of at least PREAMBLE_SIZE bytes unless the file is
+     *             shorter, which is not modified
+     * @return the offset of the body from the start of the file, which is the number of bytes that decodeHeader needs
+     * @throws IOException if the file is too short to hold the preamble
+     */
+    static int bodyOffset(final ByteBuffer head) throws IOException {
+        if (head.remaining() < PREAMBLE_SIZE)
+            throw new IOException("The binary Fluke is truncated.");
+        return head.getInt(head.position() + Integer.BYTES + 2 * Short.BYTES);
+    }
+
+    /**
+     * Read a binary Fluke from the header of its file, leaving its body in the file. The body is read from the file
+     * when the story is first needed, and only if the file still has the given modification time and size.
+     * @param header   the start of the file, from position to at least the body offset given by bodyOffset
+     * @param path     the path of the file
+     * @param modified the modification time of the file in nanoseconds when the header was read
+     * @param size     the size of the file in bytes when the header was read
+     * @return the Fluke
+     * @throws IOException if the header is not that of a valid binary Fluke
+     */
+    static Fluke decodeHeader(final ByteBuffer header,
+                              final Path path,
+                              final long modified,
+                              final long size) throws IOException {
+        return decode(header, Objects.requireNonNull(path), modified, size);
+    }
+
+    /**
+     * Decode a Fluke whose body is either in the buffer, if path is null, or left in the file at path.
+     */
+    private static Fluke decode(final ByteBuffer buffer,
+                                final Path path,
+                                final long modified,
+                                final long size) throws IOException {
+        try {
+            final var start = buffer.position();
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Not a binary Fluke.");
+            final var version = buffer.getShort();
+            if (version != VERSION)
+                throw new IOException("Unsupported binary Fluke version: " + version);
+            final var flags = buffer.getShort();
+            if (flags != 0)
+                throw new IOException("Unsupported binary Fluke flags: " + flags);
+            final var bodyOffset = buffer.getInt();
+            if (bodyOffset < PREAMBLE_SIZE || (path != null && bodyOffset > size))
+                throw new IOException("Invalid body offset: " + bodyOffset);
+
+            final var filename = readString(buffer);
+            final var title = readString(buffer);
+
+            final var promptCount = readCount(buffer, Integer.BYTES * 2);
+            final var promptSlots = new int[promptCount];
+            final var prompts = new String[promptCount];
+            for (int i = 0; i < promptCount; ++i) {
+                promptSlots[i] = buffer.getInt();
+                prompts[i] = readString(buffer);
+            }
+            final var inputs = SlotTable.of(promptSlots, prompts);
+
+            final var distinctSlots = SlotSet.of(readInts(buffer, readCount(buffer, Integer.BYTES)));
+            if (!inputs.keys().containsAll(distinctSlots))
+                throw new IOException("There are substitutions in the story body that are not in the inputs.");
+
+            final var references = buffer.getInt();
+            final var length = buffer.getInt();
+            final var byteLength = buffer.getLong();
+            final var bodyLength = StoryBody.segmentTableBytes(references) + byteLength;
+            if (references < 0 || length < 0 || byteLength < 0 || bodyLength > Integer.MAX_VALUE - 8)
+                throw new IOException("Invalid story length: " + byteLength);
+            if (buffer.position() - start != bodyOffset)
+                throw new IOException("The header does not end at the body offset.");
+
+            // The compressed body runs to the end of the file.
+            final var available = path == null ? buffer.remaining() : size - bodyOffset;
+            if (available > Integer.MAX_VALUE - 8)
+                throw new IOException("The story is too large: " + available + " bytes.");
+            final var storedLength = (int) available;
+
+            final StoryBody.Stored stored;
+            if (path == null) {
+                stored = new StoryBody.InMemory(buffer.slice(buffer.position(), storedLength));
+                buffer.position(buffer.position() + storedLength);
+            } else
+                stored = new StoryBody.FileRegion(path, bodyOffset, storedLength, modified, size);
+            final var story = StoryBody.encoded(stored, references, (int) byteLength, length, distinctSlots);
+            return Fluke.decoded(filename, title, inputs, story);
+        } catch (final BufferUnderflowException ex) {
+            throw new IOException("The binary Fluke is truncated.", ex);
+        } catch (final IllegalArgumentException ex) {
+            throw new IOException("The binary Fluke is not valid: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static void writeString(final DataOutputStream data, final String text) throws IOException {
+        final var bytes = text.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) throws IOException {
+        final var length = readCount(buffer, 1);
+        final String result;
+        if (buffer.hasArray()) {
+            result = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            final var bytes = new byte[length];
+            buffer.get(buffer.position(), bytes);
+            result = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+
+    /**
+     * Read a count of items, checking that the buffer could hold that many items of at least the given size.
+     */
+    private static int readCount(final ByteBuffer buffer, final int itemBytes) throws IOException {
+        final var count = buffer.getInt();
+        if (count < 0 || (long) count * itemBytes > buffer.remaining())
+            throw new IOException("The binary Fluke is truncated.");
+        return count;
+    }
+
+    private static int[] readInts(final ByteBuffer buffer, final int count) {
+        final var result = new int[count];
+        buffer.asIntBuffer().get(result);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return result;
+    }
+
+    /**
+     * The number of bytes in the UTF-8 encoding of the text, matching the encoder, which writes each unpaired
+     * surrogate as a single replacement byte.
+     */
+    static long utf8Length(final CharSequence text) {
+        long result = 0;
+        final var length = text.length();
+        for (int i = 0; i < length; ++i) {
+            final var c = text.charAt(i);
+            if (c < 0x80)
+                result += 1;
+            else if (c < 0x800)
+                result += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                result += 4;
+                ++i;
+            } else if (Character.isSurrogate(c))
+                result += 1;
+            else
+                result += 3;
+        }
+        return result;
+    }
+}
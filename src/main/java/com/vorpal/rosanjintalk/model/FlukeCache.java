@@ -0,0 +1,189 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of parsed Flukes, with their title Templates compiled, so that playing and then editing the same file
+ * (or playing it again) does not read and parse it again.
+ *
+ * An entry is keyed by the path of the file and is only used while the file still has the modification time and size
+ * that it had when it was read. The entries are evicted in least recently used order once their estimated retained
+ * size exceeds the capacity, so a few very large Flukes take the place of many small ones. The estimate of an entry
+ * is revised whenever it is used, since a Fluke that left its story in the file grows once the story is read.
+ */
+public final class FlukeCache {
+    public static final long DEFAULT_CAPACITY_BYTES = 64L * 1024 * 1024;
+
+    private static final FlukeCache SHARED = new FlukeCache(DEFAULT_CAPACITY_BYTES);
+
+    // Rough sizes used to estimate the retained size of a Fluke.
+    private static final long OBJECT_OVERHEAD = 16;
+    private static final long STRING_OVERHEAD = 40;
+    private static final long TEMPLATE_OVERHEAD = 96;
+
+    /**
+     * The counters of a cache at one point in time.
+     *
+     * @param hits          The number of lookups that were answered from the cache.
+     * @param misses        The number of lookups that read the file.
+     * @param evictions     The number of entries evicted to stay within the capacity.
+     * @param entries       The number of Flukes in the cache.
+     * @param retainedBytes The estimated size of the Flukes in the cache.
+     * @param capacityBytes The estimated size above which entries are evicted.
+     */
+    public record Stats(long hits,
+                       long misses,
+                       long evictions,
+                       int entries,
+                       long retainedBytes,
+                       long capacityBytes) {
+    }
+
+    private record Entry(long modified, long size, Fluke fluke, long retainedBytes) {
+    }
+
+    private final long capacityBytes;
+
+    // In access order, so that the first entry is the least recently used.
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param capacityBytes the estimated size of the Flukes above which entries are evicted
+     */
+    public FlukeCache(final long capacityBytes) {
+        if (capacityBytes < 0)
+            throw new IllegalArgumentException("The capacity must not be negative: " + capacityBytes);
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * @return the cache shared by the application
+     */
+    public static FlukeCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get the Fluke in a file, reading it only if it is not cached or the file has changed since it was cached.
+     * @param path the path of the Fluke file
+     * @return the Fluke
+     * @throws IOException if the file cannot be read or is not a valid Fluke
+     */
+    public Fluke get(final Path path) throws IOException {
+        final var key = path.toAbsolutePath().normalize();
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (final NoSuchFileException ex) {
+            invalidate(key);
+            throw ex;
+        }
+        final var modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        final var size = attributes.size();
+
+        synchronized (this) {
+            final var entry = entries.get(key);
+            if (entry != null && entry.modified() == modified && entry.size() == size) {
+                ++hits;
+                final var retained = estimateRetainedBytes(entry.fluke());
+                if (retained != entry.retainedBytes())
+                    put(key, new Entry(modified, size, entry.fluke(), retained));
+                return entry.fluke();
+            }
+            ++misses;
+        }
+
+        // Read outside the lock, so that other files can be looked up meanwhile.
+        final var fluke = Fluke.read(key);
+        fluke.titleTemplate();
+        put(key, new Entry(modified, size, fluke, estimateRetainedBytes(fluke)));
+        return fluke;
+    }
+
+    /**
+     * Remove the entry for a file, e.g. because it has just been written.
+     * @param path the path of the Fluke file
+     */
+    public synchronized void invalidate(final Path path) {
+        final var entry = entries.remove(path.toAbsolutePath().normalize());
+        if (entry != null)
+            retainedBytes -= entry.retainedBytes();
+    }
+
+    /**
+     * Remove all the entries. The counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        retainedBytes = 0;
+    }
+
+    /**
+     * @return the current counters of the cache
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), retainedBytes, capacityBytes);
+    }
+
+    private synchronized void put(final Path key, final Entry entry) {
+        final var previous = entries.remove(key);
+        if (previous != null)
+            retainedBytes -= previous.retainedBytes();
+
+        // A Fluke that could never fit is not cached at all, rather than emptying the cache for it.
+        if (entry.retainedBytes() > capacityBytes)
+            return;
+
+        entries.put(key, entry);
+        retainedBytes += entry.retainedBytes();
+
+        final var iterator = entries.values().iterator();
+        while (retainedBytes > capacityBytes) {
+            final var eldest = iterator.next();
+            iterator.remove();
+            retainedBytes -= eldest.retainedBytes();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Estimate the memory retained by a Fluke: its strings, its inputs, its title Template, and its story,
+     * without decoding a story that is still encoded.
+     * Strings are counted at two bytes per character, which overestimates text that fits in Latin-1.
+     * @param fluke the Fluke
+     * @return the estimated size in bytes
+     */
+    static long estimateRetainedBytes(final Fluke fluke) {
+        var bytes = OBJECT_OVERHEAD + stringBytes(fluke.filename()) + stringBytes(fluke.title()) +
+                fluke.body().estimateRetainedBytes();
+
+        final var inputs = fluke.inputs();
+        bytes += OBJECT_OVERHEAD + 8L * inputs.size();
+        for (int ordinal = 0; ordinal < inputs.size(); ++ordinal)
+            bytes += stringBytes(inputs.value(ordinal));
+
+        bytes += templateBytes(fluke.titleTemplate());
+        return bytes;
+    }
+
+    private static long stringBytes(final String text) {
+        return text == null ? 0 : STRING_OVERHEAD + 2L * text.length();
+    }
+
+    // Each slot reference has a literal start, a literal end, and a slot.
+    private static long templateBytes(final Template template) {
+        return TEMPLATE_OVERHEAD + 12L * template.slotCount();
+    }
+}
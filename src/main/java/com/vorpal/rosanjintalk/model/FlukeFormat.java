@@ -0,0 +1,57 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.nio.ByteBuffer;
+
+/**
+ * The formats in which a Fluke can be stored in a .fluke file. The format of a file is detected from its first bytes,
+ * so files in any format can be loaded regardless of which one is used to save.
+ */
+public enum FlukeFormat {
+    /**
+     * The original format: the Fluke as an indented JSON object in UTF-8.
+     */
+    JSON,
+
+    /**
+     * The JSON format compressed as a zlib (deflate) stream. This is the format to use to exchange Flukes.
+     */
+    DEFLATED_JSON,
+
+    /**
+     * A versioned binary format holding the prompts and the story with its segment table already computed,
+     * which is loaded without scanning or validating the story. The story and its segment table are compressed.
+     * See FlukeBinaryCodec.
+     */
+    BINARY;
+
+    // The number of bytes needed to detect the format of a file.
+    public static final int HEAD_SIZE = 4;
+
+    /**
+     * Detect the format of a .fluke file from its first bytes. Anything that is neither binary nor compressed
+     * is taken to be JSON: JSON text never starts with a valid zlib header, since its first byte would be 'x'.
+     * @param head the start of the file, from position to limit, which is not modified
+     * @return the format of the file
+     */
+    public static FlukeFormat detect(final ByteBuffer head) {
+        if (FlukeBinaryCodec.hasMagic(head))
+            return BINARY;
+        if (isZlibHeader(head))
+            return DEFLATED_JSON;
+        return JSON;
+    }
+
+    /**
+     * A zlib stream starts with a compression method of 8 (deflate), and the first two bytes as a big-endian
+     * number are a multiple of 31.
+     */
+    private static boolean isZlibHeader(final ByteBuffer head) {
+        if (head.remaining() < 2)
+            return false;
+        final var cmf = head.get(head.position()) & 0xFF;
+        final var flg = head.get(head.position() + 1) & 0xFF;
+        return (cmf & 0x0F) == 8 && (cmf >> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+    }
+}
@@ -0,0 +1,188 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+
+/**
+ * Reads and writes Flukes as JSON with the Jackson streaming API, so that no ObjectMapper has to be created and no
+ * classes introspected before the first Fluke can be loaded.
+ *
+ * The JSON is the same as that written by earlier versions through Jackson databind:
+ *
+ * {
+ *   "filename" : "...",
+ *   "title" : "...",
+ *   "inputs" : {
+ *     "1" : "...",
+ *     ...
+ *   },
+ *   "story" : "..."
+ * }
+ *
+ * The inputs are written in ascending order of substitution index. When reading, the fields may be in any order,
+ * and unknown fields are skipped. As with databind, the inputs are keyed by the decimal substitution index, scalar
+ * values are accepted as strings, and if a substitution index is repeated, the last prompt for it is used.
+ * JSON that does not describe a valid Fluke is reported with a JsonParseException, as for malformed JSON.
+ */
+public final class FlukeJsonCodec {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String FILENAME = "filename";
+    private static final String TITLE = "title";
+    private static final String INPUTS = "inputs";
+    private static final String STORY = "story";
+
+    private FlukeJsonCodec() {
+    }
+
+    /**
+     * Write a Fluke as indented JSON in UTF-8.
+     * @param fluke the Fluke to write
+     * @param out   the stream to write to, which is flushed but not closed
+     * @throws IOException if the stream fails
+     */
+    public static void encode(final Fluke fluke, final OutputStream out) throws IOException {
+        try (final var generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            write(fluke, generator);
+        }
+    }
+
+    /**
+     * Write a Fluke as indented JSON to a string. Unlike the UTF-8 stream, characters outside the Basic Multilingual
+     * Plane are not escaped, as with ObjectMapper.writeValueAsString.
+     * @param fluke the Fluke to write
+     * @return the JSON
+     */
+    public static String encode(final Fluke fluke) {
+        final var out = new StringWriter();
+        try (final var generator = JSON_FACTORY.createGenerator(out)) {
+            write(fluke, generator);
+        } catch (final IOException ex) {
+            // A StringWriter does not fail.
+            throw new UncheckedIOException(ex);
+        }
+        return out.toString();
+    }
+
+    private static void write(final Fluke fluke, final JsonGenerator generator) throws IOException {
+        generator.useDefaultPrettyPrinter();
+
+        generator.writeStartObject();
+        generator.writeStringField(FILENAME, fluke.filename());
+        generator.writeStringField(TITLE, fluke.title());
+
+        generator.writeObjectFieldStart(INPUTS);
+        final var inputs = fluke.inputs();
+        for (int ordinal = 0; ordinal < inputs.size(); ++ordinal)
+            generator.writeStringField(Integer.toString(inputs.slot(ordinal)), inputs.value(ordinal));
+        generator.writeEndObject();
+
+        generator.writeStringField(STORY, fluke.story());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Read a Fluke from JSON, detecting its encoding as Jackson does (UTF-8 unless there is a byte order mark or
+     * the first bytes show otherwise). The story is validated against the inputs.
+     * @param in the stream to read from, which is closed afterwards
+     * @return the Fluke
+     * @throws IOException if the stream fails or does not hold a valid Fluke
+     */
+    public static Fluke decode(final InputStream in) throws IOException {
+        try (final var parser = JSON_FACTORY.createParser(in)) {
+            return read(parser);
+        }
+    }
+
+    /**
+     * Read a Fluke from a JSON string.
+     * @param json the JSON
+     * @return the Fluke
+     * @throws IOException if the string does not hold a valid Fluke
+     */
+    public static Fluke decode(final String json) throws IOException {
+        try (final var parser = JSON_FACTORY.createParser(json)) {
+            return read(parser);
+        }
+    }
+
+    private static Fluke read(final JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT)
+            throw new JsonParseException(parser, "A Fluke must be a JSON object.");
+
+        String filename = null;
+        String title = null;
+        LinkedHashMap<Integer, String> inputs = null;
+        String story = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case FILENAME -> filename = readString(parser);
+                case TITLE -> title = readString(parser);
+                case INPUTS -> inputs = readInputs(parser);
+                case STORY -> story = readString(parser);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (filename == null || title == null || inputs == null || story == null)
+            throw new JsonParseException(parser, "A Fluke must have a filename, title, inputs, and story.");
+        try {
+            return new Fluke(filename, title, SlotTable.of(inputs), story);
+        } catch (final RuntimeException ex) {
+            throw new JsonParseException(parser, "The Fluke is not valid: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static LinkedHashMap<Integer, String> readInputs(final JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL)
+            return null;
+        if (parser.currentToken() != JsonToken.START_OBJECT)
+            throw new JsonParseException(parser, "The inputs of a Fluke must be a JSON object.");
+
+        final var inputs = new LinkedHashMap<Integer, String>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var key = parser.getCurrentName();
+            final int slot;
+            try {
+                slot = Integer.parseInt(key);
+            } catch (final NumberFormatException ex) {
+                throw new JsonParseException(parser, "Invalid substitution index in the inputs: " + key, ex);
+            }
+            parser.nextToken();
+            final var prompt = readString(parser);
+            if (prompt == null)
+                throw new JsonParseException(parser, "The prompt for substitution " + slot + " is null.");
+            inputs.put(slot, prompt);
+        }
+        return inputs;
+    }
+
+    /**
+     * Read the current value as a string, accepting any scalar as databind does.
+     * @return the string, or null if the value is null
+     */
+    private static String readString(final JsonParser parser) throws IOException {
+        final var token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL)
+            return null;
+        if (!token.isScalarValue())
+            throw new JsonParseException(parser, "Expected a string for " + parser.getCurrentName() + " but found " + token + ".");
+        return parser.getText();
+    }
+}
@@ -0,0 +1,431 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pack file holding many Flukes, so that a very large library does not need one file per Fluke.
+ * Packs sit in the flukes directory alongside the loose .fluke files, and a loose file takes precedence over a packed
+ * Fluke with the same name, so that a packed Fluke can be edited and saved as a loose file.
+ *
+ * A pack is mapped into memory when it is opened, and looking up a Fluke is a binary search of its sorted names,
+ * which compares the UTF-8 bytes of the name sought with the names in the mapping, so nothing is decoded or copied.
+ * The Flukes are stored in the binary .fluke format and decoded directly from the mapping, so their stories are not
+ * copied until they are needed. All integers are big-endian.
+ *
+ * magic        4 bytes  "FLKP"
+ * version      short    1
+ * flags        short    0; reserved
+ * count        int      the number of Flukes
+ * entries      count entries in ascending order of name, comparing their UTF-8 bytes as unsigned, each of
+ *              long data offset, int data length, int name offset, int name length
+ * names        the UTF-8 bytes of the names
+ * data         the Flukes in the binary .fluke format
+ *
+ * The offsets are from the start of the file. Since a pack is mapped whole, it is at most 2 GB.
+ * Packs are written to a temporary file and moved into place, so a pack that is in use is never modified.
+ */
+public final class FlukePack {
+    public static final String PACK_EXTENSION = ".flukepack";
+
+    // "FLKP", followed by the version of the layout.
+    private static final int MAGIC = 0x464C4B50;
+    private static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 20;
+
+    // The packs that have been opened, which are reused until they change, and dropped when they are removed.
+    private static final Map<Path, FlukePack> OPEN = new HashMap<>();
+
+    // The packs in each directory that has been searched, which are listed again when it changes.
+    private record Listing(long modified, List<Path> packs) {
+    }
+    private static final Map<Path, Listing> LISTINGS = new HashMap<>();
+
+    // A file to be packed, with its name in UTF-8.
+    private record Named(byte[] name, Path file) {
+    }
+
+    private final Path path;
+    private final long modified;
+    private final long size;
+    private final ByteBuffer buffer;
+    private final int count;
+
+    private FlukePack(final Path path, final long modified, final long size, final ByteBuffer buffer, final int count) {
+        this.path = path;
+        this.modified = modified;
+        this.size = size;
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Open a pack, reusing the one that is already open unless the file has changed since.
+     * @param path the path of the pack
+     * @return the pack
+     * @throws IOException if the file cannot be read or is not a valid pack
+     */
+    public static FlukePack open(final Path path) throws IOException {
+        final var key = path.toAbsolutePath().normalize();
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (final NoSuchFileException ex) {
+            synchronized (OPEN) {
+                OPEN.remove(key);
+            }
+            throw ex;
+        }
+        final var modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        synchronized (OPEN) {
+            final var open = OPEN.get(key);
+            if (open != null && open.modified == modified && open.size == attributes.size())
+                return open;
+
+            final var pack = map(key, modified);
+            OPEN.put(key, pack);
+            return pack;
+        }
+    }
+
+    private static FlukePack map(final Path path, final long modified) throws IOException {
+        // The mapping stays valid after the channel is closed.
+        final ByteBuffer buffer;
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("The pack is larger than 2 GB: " + path);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a Fluke pack: " + path);
+        final var version = buffer.getShort(4);
+        if (version != VERSION)
+            throw new IOException("Unsupported Fluke pack version: " + version);
+        final var count = buffer.getInt(8);
+        if (count < 0 || (long) count * ENTRY_SIZE > buffer.limit() - HEADER_SIZE)
+            throw new IOException("The Fluke pack is truncated: " + path);
+
+        final var pack = new FlukePack(path, modified, buffer.limit(), buffer, count);
+        pack.check();
+        return pack;
+    }
+
+    /**
+     * Check that every entry lies within the file and that the names are in strictly ascending order,
+     * so that lookups can rely on both.
+     */
+    private void check() throws IOException {
+        for (int i = 0; i < count; ++i) {
+            final var entry = HEADER_SIZE + i * ENTRY_SIZE;
+            final var dataOffset = buffer.getLong(entry);
+            final var dataLength = buffer.getInt(entry + 8);
+            final var nameOffset = buffer.getInt(entry + 12);
+            final var nameLength = buffer.getInt(entry + 16);
+            if (dataOffset < 0 || dataLength < 0 || dataOffset + dataLength > buffer.limit() ||
+                    nameOffset < 0 || nameLength < 0 || (long) nameOffset + nameLength > buffer.limit())
+                throw new IOException("Entry " + i + " of the Fluke pack is outside the file: " + path);
+
+            if (i > 0 && compareNames(i - 1, i) >= 0)
+                throw new IOException("The names in the Fluke pack are not in order: " + path);
+        }
+    }
+
+    /**
+     * Compare the names of two Flukes in the pack by their UTF-8 bytes, as unsigned, without decoding them.
+     */
+    private int compareNames(final int i, final int j) {
+        final var first = HEADER_SIZE + i * ENTRY_SIZE;
+        final var second = HEADER_SIZE + j * ENTRY_SIZE;
+        final var firstOffset = buffer.getInt(first + 12);
+        final var firstLength = buffer.getInt(first + 16);
+        final var secondOffset = buffer.getInt(second + 12);
+        final var secondLength = buffer.getInt(second + 16);
+        final var length = Math.min(firstLength, secondLength);
+        for (int k = 0; k < length; ++k) {
+            final var comparison = Byte.compareUnsigned(buffer.get(firstOffset + k), buffer.get(secondOffset + k));
+            if (comparison != 0)
+                return comparison;
+        }
+        return Integer.compare(firstLength, secondLength);
+    }
+
+    /**
+     * Compare the name of a Fluke in the pack with a key in UTF-8 by their bytes, as unsigned, without decoding it.
+     */
+    private int compareName(final int i, final byte[] key) {
+        final var entry = HEADER_SIZE + i * ENTRY_SIZE;
+        final var nameOffset = buffer.getInt(entry + 12);
+        final var nameLength = buffer.getInt(entry + 16);
+        final var length = Math.min(nameLength, key.length);
+        for (int k = 0; k < length; ++k) {
+            final var comparison = Byte.compareUnsigned(buffer.get(nameOffset + k), key[k]);
+            if (comparison != 0)
+                return comparison;
+        }
+        return Integer.compare(nameLength, key.length);
+    }
+
+    /**
+     * Find the packs in a directory. The directory is only listed again if it has changed since it was last listed.
+     * A pack that cannot be opened is left out, so that it does not hide the Flukes in the others, and the packs that
+     * were opened from the directory but are no longer in it are released.
+     * @param directory the directory, usually the flukes directory
+     * @return the packs, in order of filename, which is the order in which they are searched
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<FlukePack> inDirectory(final Path directory) throws IOException {
+        final var key = directory.toAbsolutePath().normalize();
+        final long modified;
+        try {
+            modified = Files.readAttributes(key, BasicFileAttributes.class).lastModifiedTime()
+                    .to(TimeUnit.NANOSECONDS);
+        } catch (final NoSuchFileException ex) {
+            synchronized (LISTINGS) {
+                LISTINGS.remove(key);
+            }
+            release(key, List.of());
+            throw ex;
+        }
+
+        List<Path> paths;
+        synchronized (LISTINGS) {
+            final var listing = LISTINGS.get(key);
+            paths = listing != null && listing.modified() == modified ? listing.packs() : null;
+        }
+        if (paths == null) {
+            final var listed = new ArrayList<Path>();
+            try (final var stream = Files.newDirectoryStream(key, "*" + PACK_EXTENSION)) {
+                for (final var path : stream)
+                    listed.add(path);
+            }
+            listed.sort(Comparator.comparing(path -> path.getFileName().toString()));
+            paths = Collections.unmodifiableList(listed);
+            synchronized (LISTINGS) {
+                LISTINGS.put(key, new Listing(modified, paths));
+            }
+            release(key, paths);
+        }
+
+        final var packs = new ArrayList<FlukePack>(paths.size());
+        for (final var path : paths) {
+            try {
+                packs.add(open(path));
+            } catch (final IOException ex) {
+                // The pack has been removed since the listing, or is not valid.
+            }
+        }
+        return packs;
+    }
+
+    /**
+     * Release the open packs in a directory that are not among the packs now in it, so that their mappings are not
+     * kept alive after they are deleted or renamed.
+     */
+    private static void release(final Path directory, final List<Path> packs) {
+        synchronized (OPEN) {
+            OPEN.keySet().removeIf(path -> directory.equals(path.getParent()) && !packs.contains(path));
+        }
+    }
+
+    /**
+     * @return the path of the pack
+     */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * @return the filename of the pack
+     */
+    public String filename() {
+        return path.getFileName().toString();
+    }
+
+    /**
+     * @return the modification time of the pack in nanoseconds when it was opened
+     */
+    public long modified() {
+        return modified;
+    }
+
+    /**
+     * @return the size of the pack in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the number of Flukes in the pack
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @param i the position of a Fluke in the pack, in [0, count())
+     * @return the name of the Fluke, which is the filename it would have as a loose file
+     */
+    public String name(final int i) {
+        final var entry = HEADER_SIZE + i * ENTRY_SIZE;
+        final var nameOffset = buffer.getInt(entry + 12);
+        final var nameLength = buffer.getInt(entry + 16);
+        final var bytes = new byte[nameLength];
+        buffer.get(nameOffset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Find a Fluke in the pack by a binary search of the names. The name is encoded once, and compared with the names
+     * in the mapping byte by byte.
+     * @param name the name of the Fluke
+     * @return the position of the Fluke, or a negative number if it is not in the pack
+     */
+    public int indexOf(final String name) {
+        final var key = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final var mid = (low + high) >>> 1;
+            final var comparison = compareName(mid, key);
+            if (comparison < 0)
+                low = mid + 1;
+            else if (comparison > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @param i the position of a Fluke in the pack, in [0, count())
+     * @return a read-only view of the Fluke in the binary .fluke format, from position to limit
+     */
+    public ByteBuffer data(final int i) {
+        final var entry = HEADER_SIZE + i * ENTRY_SIZE;
+        final var dataOffset = (int) buffer.getLong(entry);
+        final var dataLength = buffer.getInt(entry + 8);
+        return buffer.slice(dataOffset, dataLength).asReadOnlyBuffer();
+    }
+
+    /**
+     * Decode a Fluke in the pack. Its story stays in the mapping until it is needed.
+     * @param i the position of a Fluke in the pack, in [0, count())
+     * @return the Fluke
+     * @throws IOException if the Fluke is not valid
+     */
+    public Fluke read(final int i) throws IOException {
+        return Fluke.decode(data(i));
+    }
+
+    /**
+     * Decode a Fluke in the pack by name.
+     * @param name the name of the Fluke
+     * @return the Fluke, or null if it is not in the pack
+     * @throws IOException if the Fluke is not valid
+     */
+    public Fluke find(final String name) throws IOException {
+        final var i = indexOf(name);
+        return i < 0 ? null : read(i);
+    }
+
+    /**
+     * Write a pack of Fluke files. The files are read one at a time, so the Flukes are never all in memory.
+     * The pack is written to a temporary file next to the target and then moved into place.
+     * The Flukes are sorted by the UTF-8 bytes of their names as unsigned, the order in which indexOf searches them,
+     * which differs from the order of the Strings for names with characters outside the Basic Multilingual Plane.
+     * @param target the path of the pack
+     * @param files  the files to pack, by the name to give them in the pack
+     * @throws IOException if a file cannot be read or is not a valid Fluke, or the pack cannot be written
+     */
+    public static void write(final Path target, final Map<String, Path> files) throws IOException {
+        final var entries = new ArrayList<Named>(files.size());
+        long namesLength = 0;
+        for (final var file : files.entrySet()) {
+            final var bytes = file.getKey().getBytes(StandardCharsets.UTF_8);
+            entries.add(new Named(bytes, file.getValue()));
+            namesLength += bytes.length;
+        }
+        entries.sort((first, second) -> Arrays.compareUnsigned(first.name(), second.name()));
+        for (int i = 1; i < entries.size(); ++i)
+            if (Arrays.equals(entries.get(i - 1).name(), entries.get(i).name()))
+                throw new IOException("Two Flukes have the same name in UTF-8: " +
+                        new String(entries.get(i).name(), StandardCharsets.UTF_8));
+
+        final long namesOffset = HEADER_SIZE + (long) files.size() * ENTRY_SIZE;
+        final var dataStart = namesOffset + namesLength;
+        if (dataStart > Integer.MAX_VALUE)
+            throw new IOException("The pack would be larger than 2 GB.");
+
+        final var temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (final var channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final var table = ByteBuffer.allocate((int) dataStart);
+            table.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(files.size());
+
+            // The Flukes are written first, after space for the table and names, which is filled in at the end.
+            var dataOffset = dataStart;
+            var nameOffset = namesOffset;
+            final var encoded = new ByteArrayOutputStream();
+            for (final var entry : entries) {
+                final var file = entry.file();
+                encoded.reset();
+                try {
+                    FlukeBinaryCodec.encode(Fluke.read(file), encoded);
+                } catch (final IOException | RuntimeException ex) {
+                    throw new IOException("Could not pack " + file + ": " + ex.getMessage(), ex);
+                }
+                if (dataOffset + encoded.size() > Integer.MAX_VALUE)
+                    throw new IOException("The pack would be larger than 2 GB.");
+                writeFully(channel, ByteBuffer.wrap(encoded.toByteArray()), dataOffset);
+
+                table.putLong(dataOffset).putInt(encoded.size()).putInt((int) nameOffset).putInt(entry.name().length);
+                dataOffset += encoded.size();
+                nameOffset += entry.name().length;
+            }
+            for (final var entry : entries)
+                table.put(entry.name());
+            writeFully(channel, table.flip(), 0);
+            channel.force(false);
+        } catch (final IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporary);
+            throw ex;
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer data, final long position)
+            throws IOException {
+        while (data.hasRemaining())
+            channel.write(data, position + data.position());
+    }
+
+    @Override
+    public String toString() {
+        return "FlukePack[path=" + path + ", count=" + count + "]";
+    }
+}
@@ -0,0 +1,20 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+/**
+ * An exception that is thrown when an input set contains an entry with a term that is blocked by a WordFilter.
+ * The first such entry will be reported.
+ */
+public final class InputBlockedException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public final int entry;
+    public final String term;
+
+    public InputBlockedException(final int entry, final String term) {
+        super("Blocked term \"" + term + "\" in input for substitution " + entry);
+        this.entry = entry;
+        this.term = term;
+    }
+}
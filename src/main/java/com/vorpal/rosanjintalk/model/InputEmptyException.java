@@ -7,6 +7,8 @@ package com.vorpal.rosanjintalk.model;
  * and there is an empty entry in the input set. The first empty entry will be reported.
  */
 public final class InputEmptyException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
     public final int entry;
 
     public InputEmptyException(final int entry) {
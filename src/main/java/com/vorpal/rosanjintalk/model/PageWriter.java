@@ -0,0 +1,124 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A Writer that breaks the text written to it into pages, so that a viewer only has to lay out the pages that are
+ * visible instead of the whole text. A page ends at each line break, and a line that is longer than the page length
+ * is broken after the last whitespace in the second half of the page, or at the page length if there is none,
+ * backing off one character rather than splitting a surrogate pair.
+ *
+ * The pages are passed to the sink in batches as they are completed, so a viewer can show the start of the text while
+ * the rest is still being written. The line breaks are not included in the pages.
+ */
+public final class PageWriter extends Writer {
+    /**
+     * A page of text.
+     * @param text     the text of the page, without a line break
+     * @param endsLine true if the page ended with a line break, and false if the line continues on the next page
+     */
+    public record Page(String text, boolean endsLine) {
+    }
+
+    private final int pageLength;
+    private final int batchSize;
+    private final Consumer<List<Page>> sink;
+
+    private final StringBuilder page;
+    private List<Page> batch;
+    private boolean closed;
+
+    /**
+     * @param pageLength the maximum number of characters in a page
+     * @param batchSize  the number of pages to pass to the sink at once
+     * @param sink       receives the batches of pages, on the thread that writes to this Writer
+     */
+    public PageWriter(final int pageLength, final int batchSize, final Consumer<List<Page>> sink) {
+        if (pageLength < 1 || batchSize < 1)
+            throw new IllegalArgumentException("The page length and batch size must be positive.");
+        this.pageLength = pageLength;
+        this.batchSize = batchSize;
+        this.sink = Objects.requireNonNull(sink);
+        page = new StringBuilder(pageLength);
+        batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public void write(final char[] buffer, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, buffer.length);
+        if (closed)
+            throw new IllegalStateException("The PageWriter is closed.");
+
+        for (int i = offset; i < offset + length; ++i) {
+            final var c = buffer[i];
+            if (c == '\n') {
+                // Drop the carriage return of a CRLF line break.
+                final var end = page.length() > 0 && page.charAt(page.length() - 1) == '\r' ?
+                        page.length() - 1 :
+                        page.length();
+                emit(page.substring(0, end), true);
+                page.setLength(0);
+                continue;
+            }
+
+            if (page.length() == pageLength)
+                breakPage();
+            page.append(c);
+        }
+    }
+
+    /**
+     * Break a full page that is not at the end of a line, after the last whitespace in its second half if possible.
+     */
+    private void breakPage() {
+        int end = page.length();
+        for (int i = page.length() - 1; i >= pageLength / 2; --i)
+            if (Character.isWhitespace(page.charAt(i))) {
+                end = i + 1;
+                break;
+            }
+        if (end == page.length() && end > 1 && Character.isHighSurrogate(page.charAt(end - 1)))
+            --end;
+        emit(page.substring(0, end), false);
+        page.delete(0, end);
+    }
+
+    private void emit(final String text, final boolean endsLine) {
+        batch.add(new Page(text, endsLine));
+        if (batch.size() == batchSize)
+            flush();
+    }
+
+    /**
+     * Pass the completed pages to the sink. The page in progress is kept until it is completed or the Writer is closed.
+     */
+    @Override
+    public void flush() {
+        if (batch.isEmpty())
+            return;
+        final var completed = batch;
+        batch = new ArrayList<>(batchSize);
+        sink.accept(completed);
+    }
+
+    /**
+     * Complete the last page, if it has any text, and pass the remaining pages to the sink.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        if (page.length() > 0) {
+            emit(page.toString(), false);
+            page.setLength(0);
+        }
+        flush();
+        closed = true;
+    }
+}
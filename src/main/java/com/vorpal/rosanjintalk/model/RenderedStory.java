@@ -0,0 +1,13 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+/**
+ * The result of substituting one set of answers into a Fluke.
+ *
+ * @param index The position of the set of answers in the input, starting at 0.
+ * @param title The title with the answers substituted in.
+ * @param story The story with the answers substituted in.
+ */
+public record RenderedStory(long index, String title, String story) {
+}
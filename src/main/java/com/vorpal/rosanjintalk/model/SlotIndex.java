@@ -0,0 +1,204 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A count of the {#} entries that refer to each substitution index in a set of texts that are being edited,
+ * e.g. the title and story in the editor, kept up to date one edit at a time.
+ *
+ * An entry only depends on its own characters: it is an opening brace, one or more digits, and a closing brace,
+ * and two entries can never overlap. So when a range of the text is replaced, only the entries that overlap that range
+ * can disappear, and only the entries that overlap the replacement can appear. These are found by scanning the old
+ * and new text around the edit, extended over any adjoining digits and braces, so an edit costs time proportional to
+ * its size rather than to the size of the text, and the positions of the other entries do not need to be stored.
+ *
+ * The counts are kept as a sorted array of the distinct substitution indices with a parallel array of counts,
+ * and the SlotSet of the indices in use is only rebuilt when an index appears or disappears.
+ * Entries whose index overflowed are counted separately, so that they can be reported before saving.
+ */
+public final class SlotIndex {
+    private int[] slots = new int[16];
+    private int[] counts = new int[16];
+    private int size;
+    private int overflowCount;
+
+    // The SlotSet of the indices in use, or null if it has to be rebuilt.
+    private SlotSet used = SlotSet.EMPTY;
+
+    /**
+     * Count the entries in a text that is now being tracked.
+     * @param text the text
+     */
+    public void add(final CharSequence text) {
+        count(new SlotScanner(text), 0, text.length(), 1);
+    }
+
+    /**
+     * Stop counting the entries in a text that is no longer being tracked.
+     * @param text the text
+     */
+    public void remove(final CharSequence text) {
+        count(new SlotScanner(text), 0, text.length(), -1);
+    }
+
+    /**
+     * Update the counts for an edit to a tracked text, in which the range [start, oldEnd) of before was replaced to
+     * give after, where the replacement occupies [start, newEnd).
+     * @param before the text before the edit
+     * @param after  the text after the edit
+     * @param start  the start of the edit
+     * @param oldEnd the end of the replaced range in before, exclusive
+     * @param newEnd the end of the replacement in after, exclusive
+     */
+    public void edit(final CharSequence before,
+                     final CharSequence after,
+                     final int start,
+                     final int oldEnd,
+                     final int newEnd) {
+        Objects.checkFromToIndex(start, oldEnd, before.length());
+        Objects.checkFromToIndex(start, newEnd, after.length());
+        if (before.length() - oldEnd != after.length() - newEnd)
+            throw new IllegalArgumentException("The edit does not match the texts.");
+
+        count(scannerAround(before, start, oldEnd), start, oldEnd, -1);
+        count(scannerAround(after, start, newEnd), start, newEnd, 1);
+    }
+
+    /**
+     * Update the counts for a change to a tracked text whose range is not known. The range is found by comparing the
+     * texts, which takes time proportional to the length of their common prefix and suffix.
+     * @param before the text before the change
+     * @param after  the text after the change
+     */
+    public void change(final CharSequence before, final CharSequence after) {
+        final var limit = Math.min(before.length(), after.length());
+        int start = 0;
+        while (start < limit && before.charAt(start) == after.charAt(start))
+            ++start;
+        int oldEnd = before.length();
+        int newEnd = after.length();
+        while (oldEnd > start && newEnd > start && before.charAt(oldEnd - 1) == after.charAt(newEnd - 1)) {
+            --oldEnd;
+            --newEnd;
+        }
+        edit(before, after, start, oldEnd, newEnd);
+    }
+
+    /**
+     * A scanner over the part of a text in which an entry could overlap [from, to): the range extended back over
+     * digits to an opening brace, and forward over digits to a closing brace.
+     */
+    private static SlotScanner scannerAround(final CharSequence text, final int from, final int to) {
+        int regionStart = from;
+        while (regionStart > 0 && isDigit(text.charAt(regionStart - 1)))
+            --regionStart;
+        if (regionStart > 0 && text.charAt(regionStart - 1) == '{')
+            --regionStart;
+
+        int regionEnd = to;
+        while (regionEnd < text.length() && isDigit(text.charAt(regionEnd)))
+            ++regionEnd;
+        if (regionEnd < text.length() && text.charAt(regionEnd) == '}')
+            ++regionEnd;
+
+        return new SlotScanner(text, regionStart, regionEnd);
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Adjust the counts of the entries found by the scanner that overlap [from, to), or that span from if the range
+     * is empty.
+     */
+    private void count(final SlotScanner scanner, final int from, final int to, final int delta) {
+        while (scanner.next()) {
+            if (scanner.start() >= to)
+                break;
+            if (scanner.end() <= from)
+                continue;
+            if (scanner.overflowed())
+                overflowCount += delta;
+            else
+                adjust(scanner.slot(), delta);
+        }
+    }
+
+    private void adjust(final int slot, final int delta) {
+        final var idx = Arrays.binarySearch(slots, 0, size, slot);
+        if (idx >= 0) {
+            counts[idx] += delta;
+            if (counts[idx] == 0) {
+                System.arraycopy(slots, idx + 1, slots, idx, size - idx - 1);
+                System.arraycopy(counts, idx + 1, counts, idx, size - idx - 1);
+                --size;
+                used = null;
+            }
+            return;
+        }
+
+        if (delta < 0)
+            throw new IllegalStateException("Substitution " + slot + " is not counted.");
+        final var insertion = -idx - 1;
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        System.arraycopy(slots, insertion, slots, insertion + 1, size - insertion);
+        System.arraycopy(counts, insertion, counts, insertion + 1, size - insertion);
+        slots[insertion] = slot;
+        counts[insertion] = delta;
+        ++size;
+        used = null;
+    }
+
+    /**
+     * The number of entries that refer to a substitution index.
+     * @param slot the substitution index
+     * @return the number of {slot} entries in the tracked texts
+     */
+    public int count(final int slot) {
+        final var idx = Arrays.binarySearch(slots, 0, size, slot);
+        return idx >= 0 ? counts[idx] : 0;
+    }
+
+    /**
+     * The substitution indices that are referred to in the tracked texts.
+     * @return the set of substitution indices
+     */
+    public SlotSet used() {
+        if (used == null)
+            used = SlotSet.of(slots, size);
+        return used;
+    }
+
+    /**
+     * The substitution indices that are referred to in the tracked texts but are not defined.
+     * @param defined the substitution indices that are defined
+     * @return the set of undefined substitution indices
+     */
+    public SlotSet undefined(final SlotSet defined) {
+        return used().difference(defined);
+    }
+
+    /**
+     * The substitution indices that are defined but are not referred to in the tracked texts.
+     * @param defined the substitution indices that are defined
+     * @return the set of unused substitution indices
+     */
+    public SlotSet unused(final SlotSet defined) {
+        return defined.difference(used());
+    }
+
+    /**
+     * Whether any entry in the tracked texts has an index that is too large to be represented.
+     * @return true if there is such an entry, and false otherwise
+     */
+    public boolean hasOverflow() {
+        return overflowCount > 0;
+    }
+}
@@ -0,0 +1,152 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A scanner over a piece of text for the substitution entries of the form {#}, where # is a sequence of
+ * ASCII digits. The scanner parses the substitution index directly from the characters, so finding the
+ * entries does not allocate anything beyond the scanner itself.
+ *
+ * An entry whose index does not fit in an int is still found, but is reported as having overflowed
+ * rather than being given an index. It is up to the caller to treat this as a validation error.
+ *
+ * Usage:
+ * <pre>
+ *     final var scanner = new SlotScanner(text);
+ *     while (scanner.next()) {
+ *         // scanner.start(), scanner.end(), scanner.slot(), scanner.overflowed()
+ *     }
+ * </pre>
+ */
+public final class SlotScanner {
+    private final CharSequence text;
+    private final int limit;
+    private int position;
+
+    // The state of the current entry.
+    private int start;
+    private int end;
+    private int slot;
+    private boolean overflowed;
+
+    public SlotScanner(final CharSequence text) {
+        this(text, 0, text.length());
+    }
+
+    /**
+     * Create a scanner over a region of the text. Only entries that lie completely in the region are found.
+     * @param text the text to scan
+     * @param from the start of the region, inclusive
+     * @param to   the end of the region, exclusive
+     */
+    public SlotScanner(final CharSequence text, final int from, final int to) {
+        this.text = Objects.requireNonNull(text);
+        Objects.checkFromToIndex(from, to, text.length());
+        this.limit = to;
+        this.position = from;
+        this.start = -1;
+        this.end = -1;
+    }
+
+    /**
+     * Advance to the next entry.
+     * @return true if an entry was found, and false if the end of the region has been reached
+     */
+    public boolean next() {
+        while (position < limit) {
+            if (text.charAt(position) != '{') {
+                ++position;
+                continue;
+            }
+
+            final var open = position;
+            int idx = open + 1;
+            int value = 0;
+            boolean overflow = false;
+            while (idx < limit) {
+                final var c = text.charAt(idx);
+                if (c < '0' || c > '9')
+                    break;
+                if (!overflow) {
+                    final var digit = c - '0';
+                    if (value > (Integer.MAX_VALUE - digit) / 10)
+                        overflow = true;
+                    else
+                        value = value * 10 + digit;
+                }
+                ++idx;
+            }
+
+            // We need at least one digit followed by a closing brace.
+            if (idx > open + 1 && idx < limit && text.charAt(idx) == '}') {
+                start = open;
+                end = idx + 1;
+                slot = overflow ? -1 : value;
+                overflowed = overflow;
+                position = end;
+                return true;
+            }
+
+            // Not an entry: resume at the first character that was not a digit, as it may open an entry.
+            position = idx;
+        }
+        start = -1;
+        end = -1;
+        return false;
+    }
+
+    /**
+     * The position of the opening brace of the current entry.
+     * @return the start of the current entry, inclusive
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * The position after the closing brace of the current entry.
+     * @return the end of the current entry, exclusive
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * The substitution index of the current entry, i.e. the # in {#}.
+     * @return the substitution index, or -1 if the index overflowed
+     */
+    public int slot() {
+        return slot;
+    }
+
+    /**
+     * Whether the index of the current entry is too large to be represented.
+     * @return true if the index overflowed, and false otherwise
+     */
+    public boolean overflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Collect the distinct substitution indices in a piece of text.
+     * Entries that overflowed are not included.
+     * @param text the text to scan
+     * @return the set of substitution indices
+     */
+    public static SlotSet scan(final CharSequence text) {
+        final var scanner = new SlotScanner(text);
+        var slots = new int[16];
+        int count = 0;
+        while (scanner.next()) {
+            if (scanner.overflowed())
+                continue;
+            if (count == slots.length)
+                slots = Arrays.copyOf(slots, count * 2);
+            slots[count++] = scanner.slot();
+        }
+        return SlotSet.of(slots, count);
+    }
+}
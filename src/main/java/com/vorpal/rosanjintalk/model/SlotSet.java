@@ -0,0 +1,228 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of substitution indices, stored as a sorted array of distinct ints.
+ * This avoids boxing every index into a HashSet when scanning text for {#} entries.
+ * Membership is a binary search, and the set operations are linear merges of the sorted arrays.
+ */
+public final class SlotSet {
+    public static final SlotSet EMPTY = new SlotSet(new int[0]);
+
+    private final int[] slots;
+
+    private SlotSet(final int[] slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Create a SlotSet from the given indices, which may be unsorted and contain duplicates.
+     * @param values the substitution indices
+     * @return the SlotSet
+     */
+    public static SlotSet of(final int... values) {
+        return of(values, values.length);
+    }
+
+    /**
+     * Create a SlotSet from the first count entries of the given array, which may be unsorted and contain duplicates.
+     * The array is not modified.
+     * @param values the substitution indices
+     * @param count  the number of entries of values to use
+     * @return the SlotSet
+     */
+    static SlotSet of(final int[] values, final int count) {
+        if (count == 0)
+            return EMPTY;
+        if (isStrictlyIncreasing(values, count))
+            return new SlotSet(Arrays.copyOf(values, count));
+        final var sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        int size = 1;
+        for (int i = 1; i < sorted.length; ++i)
+            if (sorted[i] != sorted[size - 1])
+                sorted[size++] = sorted[i];
+        return new SlotSet(size == sorted.length ? sorted : Arrays.copyOf(sorted, size));
+    }
+
+    private static boolean isStrictlyIncreasing(final int[] values, final int count) {
+        for (int i = 1; i < count; ++i)
+            if (values[i - 1] >= values[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Create a SlotSet from a set of boxed indices.
+     * @param set the substitution indices
+     * @return the SlotSet
+     */
+    public static SlotSet copyOf(final Set<Integer> set) {
+        final var values = new int[set.size()];
+        int idx = 0;
+        for (final var value : set)
+            values[idx++] = value;
+        return of(values, idx);
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public boolean isEmpty() {
+        return slots.length == 0;
+    }
+
+    /**
+     * The index-th smallest substitution index in the set.
+     * @param index the position in sorted order, in [0, size())
+     * @return the substitution index
+     */
+    public int get(final int index) {
+        return slots[index];
+    }
+
+    public boolean contains(final int slot) {
+        return Arrays.binarySearch(slots, slot) >= 0;
+    }
+
+    /**
+     * The position of a substitution index in sorted order, which is its ordinal in a SlotTable keyed by this set.
+     * @param slot the substitution index
+     * @return the position of the index, or a negative number if it is not in the set
+     */
+    public int indexOf(final int slot) {
+        return Arrays.binarySearch(slots, slot);
+    }
+
+    /**
+     * Determine if every element of other is in this set.
+     * @param other the other set
+     * @return true if other is a subset of this set
+     */
+    public boolean containsAll(final SlotSet other) {
+        if (other.slots.length > slots.length)
+            return false;
+        int i = 0;
+        for (final var slot : other.slots) {
+            while (i < slots.length && slots[i] < slot)
+                ++i;
+            if (i == slots.length || slots[i] != slot)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The set of elements in either this set or other.
+     * @param other the other set
+     * @return the union
+     */
+    public SlotSet union(final SlotSet other) {
+        if (containsAll(other))
+            return this;
+        if (other.containsAll(this))
+            return other;
+        final var result = new int[slots.length + other.slots.length];
+        int i = 0, j = 0, k = 0;
+        while (i < slots.length && j < other.slots.length) {
+            final var a = slots[i];
+            final var b = other.slots[j];
+            if (a <= b) ++i;
+            if (b <= a) ++j;
+            result[k++] = Math.min(a, b);
+        }
+        while (i < slots.length)
+            result[k++] = slots[i++];
+        while (j < other.slots.length)
+            result[k++] = other.slots[j++];
+        return new SlotSet(Arrays.copyOf(result, k));
+    }
+
+    /**
+     * The set of elements in this set that are not in other.
+     * @param other the other set
+     * @return the difference
+     */
+    public SlotSet difference(final SlotSet other) {
+        final var result = new int[slots.length];
+        int j = 0, k = 0;
+        for (final var slot : slots) {
+            while (j < other.slots.length && other.slots[j] < slot)
+                ++j;
+            if (j == other.slots.length || other.slots[j] != slot)
+                result[k++] = slot;
+        }
+        if (k == slots.length)
+            return this;
+        return k == 0 ? EMPTY : new SlotSet(Arrays.copyOf(result, k));
+    }
+
+    /**
+     * A copy of the substitution indices in ascending order.
+     * @return the array of substitution indices
+     */
+    public int[] toArray() {
+        return slots.clone();
+    }
+
+    /**
+     * An unmodifiable Set view of this SlotSet for the methods that expose {@code Set<Integer>}.
+     * Iteration is in ascending order.
+     * @return the Set view
+     */
+    public Set<Integer> toSet() {
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(final Object o) {
+                return o instanceof Integer i && SlotSet.this.contains(i);
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<>() {
+                    private int idx = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return idx < slots.length;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (idx >= slots.length)
+                            throw new NoSuchElementException();
+                        return slots[idx++];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return slots.length;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o || (o instanceof SlotSet other && Arrays.equals(slots, other.slots));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(slots);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(slots);
+    }
+}
@@ -0,0 +1,173 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable table of Strings indexed by substitution, used both for the prompts of a Fluke and for the
+ * answers given to them by a player.
+ *
+ * The entries are stored densely: the substitution indices (the # in {#}) are kept in ascending order in a
+ * SlotSet, and entry i of the table is for the substitution index keys().get(i). We call i the ordinal of the
+ * entry. Everything that works with a Fluke addresses entries by ordinal, and the substitution index itself is
+ * only metadata for display and for the .fluke file format.
+ *
+ * A table of answers is created from a table of prompts with withValues, which shares the keys, so that a
+ * Template bound to the prompts can render the answers without looking up any substitution indices.
+ */
+public final class SlotTable {
+    public static final SlotTable EMPTY = new SlotTable(SlotSet.EMPTY, new String[0]);
+
+    private final SlotSet keys;
+    private final String[] values;
+
+    private SlotTable(final SlotSet keys, final String[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Create a table from parallel arrays of substitution indices and values.
+     * The arrays do not need to be sorted, but the substitution indices must be distinct.
+     * @param slots  the substitution indices
+     * @param values the value for each substitution index
+     * @throws IllegalArgumentException if the arrays differ in length or a substitution index is repeated
+     */
+    public static SlotTable of(final int[] slots, final String[] values) {
+        if (slots.length != values.length)
+            throw new IllegalArgumentException("There are " + slots.length + " substitutions but "
+                    + values.length + " values.");
+        for (final var value : values)
+            Objects.requireNonNull(value);
+
+        final var keys = SlotSet.of(slots);
+        if (keys.size() != slots.length)
+            throw new IllegalArgumentException("Substitutions must be distinct.");
+
+        // Place each value at the ordinal of its substitution index.
+        final var ordered = new String[values.length];
+        for (int i = 0; i < slots.length; ++i)
+            ordered[keys.indexOf(slots[i])] = values[i];
+        return new SlotTable(keys, ordered);
+    }
+
+    /**
+     * Create a table from a map of substitution index to value.
+     * @param map the map
+     * @return the table
+     */
+    public static SlotTable of(final Map<Integer, String> map) {
+        final var slots = new int[map.size()];
+        final var values = new String[map.size()];
+        int idx = 0;
+        for (final var entry : map.entrySet()) {
+            slots[idx] = entry.getKey();
+            values[idx] = entry.getValue();
+            ++idx;
+        }
+        return of(slots, values);
+    }
+
+    /**
+     * Create a table with the same substitution indices as this one, but different values.
+     * The keys are shared rather than copied.
+     * @param values the values, indexed by ordinal
+     * @return the new table
+     * @throws IllegalArgumentException if the number of values does not match the size of the table
+     */
+    public SlotTable withValues(final String[] values) {
+        if (values.length != this.values.length)
+            throw new IllegalArgumentException("Expected " + this.values.length + " values but got " + values.length);
+        for (final var value : values)
+            Objects.requireNonNull(value);
+        return new SlotTable(keys, values.clone());
+    }
+
+    /**
+     * The substitution indices, in ascending order. The ordinal of an entry is its position in this set.
+     * @return the substitution indices
+     */
+    public SlotSet keys() {
+        return keys;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * The substitution index of the entry with the given ordinal.
+     * @param ordinal the ordinal, in [0, size())
+     * @return the substitution index
+     */
+    public int slot(final int ordinal) {
+        return keys.get(ordinal);
+    }
+
+    /**
+     * The value of the entry with the given ordinal.
+     * @param ordinal the ordinal, in [0, size())
+     * @return the value
+     */
+    public String value(final int ordinal) {
+        return values[ordinal];
+    }
+
+    /**
+     * The ordinal of the entry for the given substitution index.
+     * @param slot the substitution index
+     * @return the ordinal, or a negative number if there is no entry for the substitution index
+     */
+    public int ordinalOf(final int slot) {
+        return keys.indexOf(slot);
+    }
+
+    /**
+     * Produce a table with every value stripped. If no value changes, this table is returned.
+     * @return the stripped table
+     */
+    public SlotTable strip() {
+        String[] stripped = null;
+        for (int i = 0; i < values.length; ++i) {
+            final var value = values[i].strip();
+            if (value.length() != values[i].length()) {
+                if (stripped == null)
+                    stripped = values.clone();
+                stripped[i] = value;
+            }
+        }
+        return stripped == null ? this : new SlotTable(keys, stripped);
+    }
+
+    /**
+     * Convert to a map of substitution index to value, e.g. for serialization.
+     * @return an unmodifiable map that iterates in ascending order of substitution index
+     */
+    public Map<Integer, String> toMap() {
+        final var map = new LinkedHashMap<Integer, String>();
+        for (int i = 0; i < values.length; ++i)
+            map.put(keys.get(i), values[i]);
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o ||
+                (o instanceof SlotTable other && keys.equals(other.keys) && Arrays.equals(values, other.values));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * keys.hashCode() + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
@@ -0,0 +1,268 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The story of a Fluke, which is either compiled or still encoded as it was read from a binary .fluke file.
+ *
+ * An encoded story keeps its body: the segment table that was computed when it was saved, followed by the UTF-8 bytes
+ * of the story, compressed together. The body is either held in memory or left in the file, and is only
+ * read, decompressed, and decoded into a Template when the text is first needed, e.g. to render or edit it.
+ * The distinct substitutions are always available, so a Fluke can be listed and validated without its story.
+ */
+final class StoryBody {
+    /**
+     * Where the body of an encoded story is kept until it is decoded.
+     */
+    sealed interface Stored permits InMemory, FileRegion {
+        /**
+         * @return the body, from position to limit, which must not be modified
+         * @throws IOException if the body cannot be read
+         */
+        ByteBuffer read() throws IOException;
+
+        /**
+         * @return the estimated memory retained by holding the body
+         */
+        long retainedBytes();
+    }
+
+    /**
+     * A body held in memory, e.g. as a view of the buffer that a whole file was read into.
+     * @param buffer the body, from position to limit, all of whose backing storage is retained
+     */
+    record InMemory(ByteBuffer buffer) implements Stored {
+        @Override
+        public ByteBuffer read() {
+            return buffer.duplicate();
+        }
+
+        @Override
+        public long retainedBytes() {
+            return buffer.capacity();
+        }
+    }
+
+    /**
+     * A body left in its file, which is only read if the file has not changed since its header was read.
+     * @param path     the path of the file
+     * @param offset   the offset of the body in the file
+     * @param length   the length of the body in bytes
+     * @param modified the modification time of the file in nanoseconds when its header was read
+     * @param size     the size of the file in bytes when its header was read
+     */
+    record FileRegion(Path path, long offset, int length, long modified, long size) implements Stored {
+        @Override
+        public ByteBuffer read() throws IOException {
+            try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                final var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) != modified || channel.size() != size)
+                    throw new IOException("The file has changed since it was loaded: " + path);
+
+                final var buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining())
+                    if (channel.read(buffer, offset + buffer.position()) < 0)
+                        throw new EOFException("The file has been truncated: " + path);
+                return buffer.flip();
+            }
+        }
+
+        @Override
+        public long retainedBytes() {
+            return 64 + 2L * path.toString().length();
+        }
+    }
+
+    private final SlotSet distinctSlots;
+    private volatile Template template;
+
+    // Until the story is decoded, guarded by this.
+    private Stored stored;
+    private int references;
+    private int byteLength;
+    private int length;
+
+    private StoryBody(final SlotSet distinctSlots) {
+        this.distinctSlots = distinctSlots;
+    }
+
+    /**
+     * @param template the compiled story
+     * @return the body holding the compiled story
+     */
+    static StoryBody of(final Template template) {
+        final var body = new StoryBody(template.distinctSlots());
+        body.template = template;
+        return body;
+    }
+
+    /**
+     * @param stored        the body: the segment table and then the UTF-8 bytes of the story, as a zlib stream
+     * @param references    the number of slot references in the segment table
+     * @param byteLength    the length of the UTF-8 bytes
+     * @param length        the length of the story in chars
+     * @param distinctSlots the distinct substitution indices that the segment table must refer to
+     * @return the body holding the encoded story
+     */
+    static StoryBody encoded(final Stored stored,
+                             final int references,
+                             final int byteLength,
+                             final int length,
+                             final SlotSet distinctSlots) {
+        final var body = new StoryBody(distinctSlots);
+        body.stored = stored;
+        body.references = references;
+        body.byteLength = byteLength;
+        body.length = length;
+        return body;
+    }
+
+    /**
+     * @param references the number of slot references
+     * @return the size of a segment table with that many slot references
+     */
+    static long segmentTableBytes(final int references) {
+        return Integer.BYTES * (3L * references + 2);
+    }
+
+    /**
+     * Check that a segment table fits a text of the given length and only refers to the given substitutions.
+     * @param length        the length of the text
+     * @param literalStarts the start of each literal
+     * @param literalEnds   the end of each literal
+     * @param slots         the substitution index of each slot reference
+     * @param distinctSlots the distinct substitution indices that slots must be among
+     * @throws IllegalArgumentException if the segment table is not consistent
+     */
+    static void checkSegments(final int length,
+                              final int[] literalStarts,
+                              final int[] literalEnds,
+                              final int[] slots,
+                              final SlotSet distinctSlots) {
+        Template.checkSegments(length, literalStarts, literalEnds, slots);
+        for (final var slot : slots)
+            if (!distinctSlots.contains(slot))
+                throw new IllegalArgumentException("The segment table refers to a substitution that is not in the " +
+                        "story slots: " + slot);
+    }
+
+    /**
+     * @return the distinct substitutions referenced in the story, which does not decode it
+     */
+    SlotSet distinctSlots() {
+        return distinctSlots;
+    }
+
+    /**
+     * Estimate the memory retained by the story: the text and segment table if it has been decoded, and otherwise
+     * whatever holds its body.
+     * @return the estimated size in bytes
+     */
+    long estimateRetainedBytes() {
+        synchronized (this) {
+            if (template == null)
+                return stored.retainedBytes();
+        }
+        final var decoded = template;
+        return 40 + 2L * decoded.source().length() + 12L * decoded.slotCount();
+    }
+
+    /**
+     * Get the compiled story, decoding it the first time if it is encoded, which reads it from its file if it was
+     * left there.
+     * @return the story Template
+     * @throws IllegalStateException if the encoded story is corrupt or does not match its segment table
+     * @throws UncheckedIOException  if the story cannot be read from its file, or the file has changed
+     */
+    Template template() {
+        var result = template;
+        if (result == null) {
+            synchronized (this) {
+                result = template;
+                if (result == null) {
+                    result = decode();
+                    template = result;
+                    stored = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Template decode() {
+        final var tableBytes = (int) segmentTableBytes(references);
+        final ByteBuffer encoded;
+        try {
+            encoded = stored.read();
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        final var body = ByteBuffer.wrap(inflate(encoded, tableBytes + byteLength));
+
+        final var table = body.asIntBuffer();
+        final var literalStarts = new int[references + 1];
+        final var literalEnds = new int[references + 1];
+        final var slots = new int[references];
+        table.get(literalStarts).get(literalEnds).get(slots);
+        body.position(body.position() + tableBytes);
+        try {
+            checkSegments(length, literalStarts, literalEnds, slots, distinctSlots);
+        } catch (final IllegalArgumentException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+
+        final String source;
+        if (body.hasArray())
+            source = new String(body.array(), body.arrayOffset() + body.position(), body.remaining(),
+                    StandardCharsets.UTF_8);
+        else
+            source = StandardCharsets.UTF_8.decode(body).toString();
+
+        if (source.length() != length)
+            throw new IllegalStateException("The story is " + source.length() + " characters long, but its segment " +
+                    "table is for " + length + " characters.");
+        return Template.ofSegments(source, literalStarts, literalEnds, slots, distinctSlots);
+    }
+
+    private static byte[] inflate(final ByteBuffer compressed, final int size) {
+        final var result = new byte[size];
+        final var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            // Once the result is full, inflate into a spare byte to reach the end of the stream.
+            final var spare = new byte[1];
+            int position = 0;
+            while (!inflater.finished()) {
+                final var count = position < result.length ?
+                        inflater.inflate(result, position, result.length - position) :
+                        inflater.inflate(spare);
+                if (count > 0 && position == result.length)
+                    throw new IllegalStateException("The compressed story is longer than recorded.");
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                position += count;
+            }
+            if (position != result.length || !inflater.finished())
+                throw new IllegalStateException("The compressed story is truncated.");
+            return result;
+        } catch (final DataFormatException ex) {
+            throw new IllegalStateException("The compressed story is corrupt: " + ex.getMessage(), ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
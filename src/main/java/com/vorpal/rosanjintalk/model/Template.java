@@ -0,0 +1,345 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A compiled form of a piece of text containing {#} substitution entries.
+ * The text is broken up once into an alternating sequence of literal segments and slot references:
+ *
+ * literal[0] {slot[0]} literal[1] {slot[1]} ... {slot[n-1]} literal[n]
+ *
+ * The literal segments are stored as offsets into the source text, so compiling does not copy the text.
+ * Rendering then makes a single pass over the segments into an output buffer whose size is computed
+ * exactly beforehand, instead of copying the whole text once per substitution. Alternatively, the segments can be
+ * streamed to a Writer, in which case the rendered text is never held in memory at all.
+ *
+ * An entry whose index is too large to represent is left in the text as a literal and is recorded so that
+ * it can be reported as a validation error.
+ */
+public final class Template {
+    // The largest piece of a literal that is passed to a Writer at once, since some Writers copy what they are given.
+    private static final int WRITE_CHUNK = 8192;
+
+    private final String source;
+
+    // There is always one more literal than there are slots: literal i precedes slot i.
+    private final int[] literalStarts;
+    private final int[] literalEnds;
+    private final int[] slots;
+
+    // The first entry whose index overflowed, or null if there is none.
+    private final String overflow;
+
+    // The distinct slots, calculated on first request.
+    private volatile SlotSet distinctSlots;
+
+    // The ordinal of each slot reference in the most recently used set of keys.
+    private volatile Binding binding;
+
+    private record Binding(SlotSet keys, int[] ordinals) {
+    }
+
+    private Template(final String source,
+                     final int[] literalStarts,
+                     final int[] literalEnds,
+                     final int[] slots,
+                     final String overflow) {
+        this.source = source;
+        this.literalStarts = literalStarts;
+        this.literalEnds = literalEnds;
+        this.slots = slots;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Compile a piece of text into a Template.
+     * @param source the text containing the {#} entries
+     * @return the compiled Template
+     */
+    public static Template compile(final String source) {
+        Objects.requireNonNull(source);
+
+        // Count the slots first so that the arrays can be allocated at their exact size.
+        var scanner = new SlotScanner(source);
+        int count = 0;
+        String overflow = null;
+        while (scanner.next()) {
+            if (!scanner.overflowed())
+                ++count;
+            else if (overflow == null)
+                overflow = source.substring(scanner.start(), scanner.end());
+        }
+
+        final var literalStarts = new int[count + 1];
+        final var literalEnds = new int[count + 1];
+        final var slots = new int[count];
+
+        scanner = new SlotScanner(source);
+        int idx = 0;
+        int position = 0;
+        while (scanner.next()) {
+            if (scanner.overflowed())
+                continue;
+            literalStarts[idx] = position;
+            literalEnds[idx] = scanner.start();
+            slots[idx] = scanner.slot();
+            position = scanner.end();
+            ++idx;
+        }
+        literalStarts[count] = position;
+        literalEnds[count] = source.length();
+
+        return new Template(source, literalStarts, literalEnds, slots, overflow);
+    }
+
+    /**
+     * Create a Template from a segment table that was computed when it was saved, without scanning the source.
+     * The segment table must already have been checked with checkSegments.
+     * @param source        the text
+     * @param literalStarts the start of each literal, of which there is one more than there are slots
+     * @param literalEnds   the end of each literal
+     * @param slots         the substitution index of each slot reference
+     * @param distinctSlots the distinct substitution indices in slots
+     * @return the Template
+     */
+    static Template ofSegments(final String source,
+                               final int[] literalStarts,
+                               final int[] literalEnds,
+                               final int[] slots,
+                               final SlotSet distinctSlots) {
+        final var template = new Template(source, literalStarts, literalEnds, slots, null);
+        template.distinctSlots = distinctSlots;
+        return template;
+    }
+
+    /**
+     * Check that a segment table describes literals in order within a text of the given length.
+     * @param length        the length of the text
+     * @param literalStarts the start of each literal
+     * @param literalEnds   the end of each literal
+     * @param slots         the substitution index of each slot reference
+     * @throws IllegalArgumentException if the segment table is not consistent
+     */
+    static void checkSegments(final int length,
+                              final int[] literalStarts,
+                              final int[] literalEnds,
+                              final int[] slots) {
+        if (literalStarts.length != slots.length + 1 || literalEnds.length != slots.length + 1)
+            throw new IllegalArgumentException("The segment table does not have one more literal than slots.");
+        int position = 0;
+        for (int i = 0; i < literalStarts.length; ++i) {
+            if (literalStarts[i] < position || literalEnds[i] < literalStarts[i] || literalEnds[i] > length)
+                throw new IllegalArgumentException("Literal " + i + " of the segment table is out of order.");
+            if (i < slots.length && slots[i] < 0)
+                throw new IllegalArgumentException("Invalid substitution in the segment table: " + slots[i]);
+            position = literalEnds[i];
+        }
+    }
+
+    /**
+     * The start of a literal in the source, for saving the segment table.
+     * @param literal the literal, in [0, slotCount()]
+     * @return the offset of the first character of the literal
+     */
+    int literalStart(final int literal) {
+        return literalStarts[literal];
+    }
+
+    /**
+     * The end of a literal in the source, for saving the segment table.
+     * @param literal the literal, in [0, slotCount()]
+     * @return the offset after the last character of the literal
+     */
+    int literalEnd(final int literal) {
+        return literalEnds[literal];
+    }
+
+    /**
+     * The text from which this Template was compiled.
+     * @return the source text
+     */
+    public String source() {
+        return source;
+    }
+
+    /**
+     * The number of slot references in the text. A slot that appears multiple times is counted multiple times.
+     * @return the number of slot references
+     */
+    public int slotCount() {
+        return slots.length;
+    }
+
+    /**
+     * The substitution index of the given slot reference.
+     * @param reference the position of the slot reference in the text, in [0, slotCount())
+     * @return the substitution index, i.e. the # in {#}
+     */
+    public int slot(final int reference) {
+        return slots[reference];
+    }
+
+    /**
+     * The distinct substitution indices referenced in the text. This is calculated once and then cached.
+     * @return the set of substitution indices
+     */
+    public SlotSet distinctSlots() {
+        var result = distinctSlots;
+        if (result == null) {
+            result = SlotSet.of(slots, slots.length);
+            distinctSlots = result;
+        }
+        return result;
+    }
+
+    /**
+     * The distinct substitution indices referenced in the text as a Set.
+     * @return an unmodifiable set of the substitution indices
+     */
+    public Set<Integer> slotSet() {
+        return distinctSlots().toSet();
+    }
+
+    /**
+     * The first {#} entry in the text whose index is too large to be represented, if any.
+     * Such an entry is not a valid substitution and is left in the text unchanged.
+     * @return the text of the entry, or null if every entry is valid
+     */
+    public String overflow() {
+        return overflow;
+    }
+
+    /**
+     * Produce the Template for the stripped source text without rescanning it.
+     * Slot references never contain whitespace, so only the first and last literals are affected.
+     * @return a Template whose source is source().strip()
+     */
+    public Template strip() {
+        final var stripped = source.strip();
+        if (stripped.length() == source.length())
+            return this;
+
+        // Find where the stripped text begins in the source.
+        int leading = 0;
+        while (leading < source.length() && Character.isWhitespace(source.codePointAt(leading)))
+            leading += Character.charCount(source.codePointAt(leading));
+
+        final var length = stripped.length();
+        final var starts = new int[literalStarts.length];
+        final var ends = new int[literalEnds.length];
+        for (int i = 0; i < literalStarts.length; ++i) {
+            starts[i] = Math.max(0, Math.min(length, literalStarts[i] - leading));
+            ends[i] = Math.max(0, Math.min(length, literalEnds[i] - leading));
+        }
+        return new Template(stripped, starts, ends, slots, overflow);
+    }
+
+    /**
+     * Determine if every slot referenced in this Template is in the set of keys.
+     * A Template with an entry whose index overflowed is never covered.
+     * @param keys the set of substitution indices that are available
+     * @return true if every slot reference can be satisfied, and false otherwise
+     */
+    public boolean isCoveredBy(final SlotSet keys) {
+        return overflow == null && keys.containsAll(distinctSlots());
+    }
+
+    /**
+     * Determine if every slot referenced in this Template is in the set of keys.
+     * A Template with an entry whose index overflowed is never covered.
+     * @param keys the set of substitution indices that are available
+     * @return true if every slot reference can be satisfied, and false otherwise
+     */
+    public boolean isCoveredBy(final Set<Integer> keys) {
+        if (overflow != null)
+            return false;
+        final var distinct = distinctSlots();
+        for (int i = 0; i < distinct.size(); ++i)
+            if (!keys.contains(distinct.get(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Find the ordinal of each slot reference for the given keys. The result is cached, so repeatedly rendering
+     * with tables that share their keys, e.g. answers created from the same prompts, only does this once.
+     * @param keys the substitution indices of the table being rendered
+     * @return the ordinal of each slot reference
+     * @throws IllegalArgumentException if a slot referenced in the text is not in keys
+     */
+    private int[] ordinals(final SlotSet keys) {
+        final var current = binding;
+        if (current != null && current.keys == keys)
+            return current.ordinals;
+
+        final var ordinals = new int[slots.length];
+        for (int i = 0; i < slots.length; ++i) {
+            ordinals[i] = keys.indexOf(slots[i]);
+            if (ordinals[i] < 0)
+                throw new IllegalArgumentException("No answer for substitution " + slots[i]);
+        }
+        binding = new Binding(keys, ordinals);
+        return ordinals;
+    }
+
+    /**
+     * Render the Template with the given answers. The answers are substituted as they are given.
+     * @param answers the table of answers
+     * @return the text with the answers substituted in
+     * @throws IllegalArgumentException if a slot referenced in the text has no answer
+     */
+    public String render(final SlotTable answers) {
+        final var ordinals = ordinals(answers.keys());
+
+        // First pass: compute the exact output length.
+        long length = 0;
+        for (final var ordinal : ordinals)
+            length += answers.value(ordinal).length();
+        for (int i = 0; i < literalStarts.length; ++i)
+            length += literalEnds[i] - literalStarts[i];
+        if (length > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Rendered text is too long: " + length + " characters");
+
+        // Second pass: copy the literals and answers into the buffer.
+        final var buffer = new char[(int) length];
+        int position = 0;
+        for (int i = 0; i < slots.length; ++i) {
+            source.getChars(literalStarts[i], literalEnds[i], buffer, position);
+            position += literalEnds[i] - literalStarts[i];
+            final var value = answers.value(ordinals[i]);
+            value.getChars(0, value.length(), buffer, position);
+            position += value.length();
+        }
+        source.getChars(literalStarts[slots.length], literalEnds[slots.length], buffer, position);
+        return new String(buffer);
+    }
+
+    /**
+     * Render the Template with the given answers directly to a Writer, one segment at a time.
+     * The rendered text is never built in memory, and literals are written in bounded chunks.
+     * @param answers the table of answers
+     * @param out     the Writer to which to write the rendered text
+     * @throws IOException if the Writer fails
+     * @throws IllegalArgumentException if a slot referenced in the text has no answer
+     */
+    public void renderTo(final SlotTable answers, final Writer out) throws IOException {
+        final var ordinals = ordinals(answers.keys());
+        for (int i = 0; i < slots.length; ++i) {
+            writeChunked(out, source, literalStarts[i], literalEnds[i]);
+            final var value = answers.value(ordinals[i]);
+            writeChunked(out, value, 0, value.length());
+        }
+        writeChunked(out, source, literalStarts[slots.length], literalEnds[slots.length]);
+    }
+
+    private static void writeChunked(final Writer out, final String text, final int start, final int end)
+            throws IOException {
+        for (int position = start; position < end; position += WRITE_CHUNK)
+            out.write(text, position, Math.min(WRITE_CHUNK, end - position));
+    }
+}
@@ -0,0 +1,303 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * A filter for answers that contain any of a list of blocked terms, e.g. fleurg.
+ *
+ * The terms are compiled into an Aho-Corasick automaton, so a text is checked against all of them in one pass over its
+ * characters, however many terms there are. Matching ignores case: each character is folded through upper case to
+ * lower case, which does not depend on the default locale. A term matches anywhere in the text, including inside a
+ * longer word.
+ *
+ * Because a match only depends on its own characters, when an answer is edited only the edited region, widened by
+ * the length of the longest term less one on each side, has to be scanned for new matches.
+ *
+ * The terms are read from the file BLOCKLIST_FILENAME in the flukes directory: one term per line in UTF-8, with
+ * surrounding whitespace, blank lines and lines starting with # ignored. If there is no such file, DEFAULT_TERMS
+ * are blocked.
+ */
+public final class WordFilter {
+    public static final String BLOCKLIST_FILENAME = "blocklist.txt";
+    public static final List<String> DEFAULT_TERMS = List.of("fleurg");
+
+    // A filter that blocks nothing.
+    public static final WordFilter NONE = compile(List.of());
+
+    // The transitions out of state s are edgeChars[edgeStart[s]..edgeStart[s+1]), in ascending order,
+    // to the states in edgeTargets at the same positions. The root is state 0.
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+
+    // The state to fall back to when there is no transition: the longest proper suffix that is in the trie.
+    private final int[] fail;
+
+    // The length of the longest term that ends at each state, or 0 if there is none.
+    private final int[] matchLength;
+
+    private final int maxTermLength;
+
+    // The most recently loaded blocklist.
+    private record Loaded(Path path, long modified, long size, WordFilter filter) {
+    }
+
+    private static volatile Loaded loaded;
+
+    private WordFilter(final int[] edgeStart,
+                       final char[] edgeChars,
+                       final int[] edgeTargets,
+                       final int[] fail,
+                       final int[] matchLength,
+                       final int maxTermLength) {
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.matchLength = matchLength;
+        this.maxTermLength = maxTermLength;
+    }
+
+    /**
+     * A match of a blocked term in a text.
+     * @param start the start of the match, inclusive
+     * @param end   the end of the match, exclusive
+     * @param text  the matched text, as it appears in the text
+     */
+    public record Match(int start, int end, String text) {
+    }
+
+    private static char fold(final char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Compile a list of terms into a filter. Surrounding whitespace is ignored, as are blank terms.
+     * @param terms the terms to block
+     * @return the filter
+     */
+    public static WordFilter compile(final Collection<String> terms) {
+        // Build the trie with a sorted map of transitions per state, and then flatten it.
+        final var trie = new ArrayList<TreeMap<Character, Integer>>();
+        final var termLength = new ArrayList<Integer>();
+        trie.add(new TreeMap<>());
+        termLength.add(0);
+        int maxTermLength = 0;
+
+        for (final var term : terms) {
+            final var stripped = term.strip();
+            if (stripped.isEmpty())
+                continue;
+            int state = 0;
+            for (int i = 0; i < stripped.length(); ++i) {
+                final var c = fold(stripped.charAt(i));
+                final var next = trie.get(state).get(c);
+                if (next != null) {
+                    state = next;
+                    continue;
+                }
+                trie.add(new TreeMap<>());
+                termLength.add(0);
+                trie.get(state).put(c, trie.size() - 1);
+                state = trie.size() - 1;
+            }
+            termLength.set(state, stripped.length());
+            maxTermLength = Math.max(maxTermLength, stripped.length());
+        }
+
+        final var stateCount = trie.size();
+        final var edgeStart = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; ++state)
+            edgeStart[state + 1] = edgeStart[state] + trie.get(state).size();
+        final var edgeChars = new char[edgeStart[stateCount]];
+        final var edgeTargets = new int[edgeStart[stateCount]];
+        for (int state = 0; state < stateCount; ++state) {
+            int idx = edgeStart[state];
+            for (final var edge : trie.get(state).entrySet()) {
+                edgeChars[idx] = edge.getKey();
+                edgeTargets[idx] = edge.getValue();
+                ++idx;
+            }
+        }
+
+        // Compute the failure links breadth first, so that the link of a state's parent is known before the state's.
+        final var fail = new int[stateCount];
+        final var matchLength = new int[stateCount];
+        final var filter = new WordFilter(edgeStart, edgeChars, edgeTargets, fail, matchLength, maxTermLength);
+        final var queue = new ArrayDeque<Integer>();
+        for (int idx = edgeStart[0]; idx < edgeStart[1]; ++idx) {
+            final var child = edgeTargets[idx];
+            matchLength[child] = termLength.get(child);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            for (int idx = edgeStart[state]; idx < edgeStart[state + 1]; ++idx) {
+                final var child = edgeTargets[idx];
+                fail[child] = filter.step(fail[state], edgeChars[idx]);
+                matchLength[child] = Math.max(termLength.get(child), matchLength[fail[child]]);
+                queue.add(child);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Read the blocklist in a directory, or use DEFAULT_TERMS if there is none. The filter is reused until the file
+     * changes, as determined by its modification time and size.
+     * @param directory the flukes directory
+     * @return the filter
+     * @throws IOException if the blocklist exists but cannot be read
+     */
+    public static WordFilter load(final Path directory) throws IOException {
+        final var path = directory.resolve(BLOCKLIST_FILENAME).toAbsolutePath().normalize();
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (final NoSuchFileException ex) {
+            return defaults();
+        }
+
+        final var modified = attributes.lastModifiedTime().toMillis();
+        final var size = attributes.size();
+        final var current = loaded;
+        if (current != null && current.path().equals(path) && current.modified() == modified && current.size() == size)
+            return current.filter();
+
+        final var terms = new ArrayList<String>();
+        for (final var line : Files.readAllLines(path, StandardCharsets.UTF_8))
+            if (!line.strip().startsWith("#"))
+                terms.add(line);
+        final var filter = compile(terms);
+        loaded = new Loaded(path, modified, size, filter);
+        return filter;
+    }
+
+    /**
+     * The filter for DEFAULT_TERMS, which is used when there is no blocklist.
+     * @return the filter
+     */
+    public static WordFilter defaults() {
+        return DefaultFilter.FILTER;
+    }
+
+    /**
+     * Holds the filter for DEFAULT_TERMS, so that it is only compiled if there is no blocklist.
+     */
+    private static final class DefaultFilter {
+        static final WordFilter FILTER = compile(DEFAULT_TERMS);
+    }
+
+    /**
+     * Follow the transition from a state on a folded character, falling back along the failure links if necessary.
+     */
+    private int step(int state, final char c) {
+        while (true) {
+            final var idx = Arrays.binarySearch(edgeChars, edgeStart[state], edgeStart[state + 1], c);
+            if (idx >= 0)
+                return edgeTargets[idx];
+            if (state == 0)
+                return 0;
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Whether the filter blocks anything at all.
+     * @return true if there are no terms, and false otherwise
+     */
+    public boolean isEmpty() {
+        return maxTermLength == 0;
+    }
+
+    /**
+     * Find the first blocked term in a text.
+     * @param text the text to scan
+     * @return the match, or null if the text contains no blocked term
+     */
+    public Match find(final CharSequence text) {
+        return find(text, 0, text.length());
+    }
+
+    /**
+     * Find the first blocked term in a text that overlaps the range [from, to), or that spans from if the range is
+     * empty. Only the range, widened by the length of the longest term less one on each side, is scanned.
+     * @param text the text to scan
+     * @param from the start of the range, inclusive
+     * @param to   the end of the range, exclusive
+     * @return the match, or null if there is none
+     */
+    public Match find(final CharSequence text, final int from, final int to) {
+        Objects.checkFromToIndex(from, to, text.length());
+        if (isEmpty())
+            return null;
+
+        final var scanFrom = Math.max(0, from - (maxTermLength - 1));
+        final var scanTo = Math.min(text.length(), to + maxTermLength - 1);
+        int state = 0;
+        for (int i = scanFrom; i < scanTo; ++i) {
+            state = step(state, fold(text.charAt(i)));
+            final var length = matchLength[state];
+            if (length == 0)
+                continue;
+            final var end = i + 1;
+            final var start = end - length;
+            if (start < to && end > from)
+                return new Match(start, end, text.subSequence(start, end).toString());
+        }
+        return null;
+    }
+
+    /**
+     * Find a blocked term that appears in a text as the result of a change. The range of the change is found by
+     * comparing the texts, without copying them, and then only that range is scanned.
+     * @param before the text before the change
+     * @param after  the text after the change
+     * @return the match in the text after the change, or null if there is none
+     */
+    public Match findInChange(final CharSequence before, final CharSequence after) {
+        final var limit = Math.min(before.length(), after.length());
+        int start = 0;
+        while (start < limit && before.charAt(start) == after.charAt(start))
+            ++start;
+        int oldEnd = before.length();
+        int newEnd = after.length();
+        while (oldEnd > start && newEnd > start && before.charAt(oldEnd - 1) == after.charAt(newEnd - 1)) {
+            --oldEnd;
+            --newEnd;
+        }
+        return find(after, start, newEnd);
+    }
+
+    /**
+     * Check that none of a set of answers contains a blocked term.
+     * @param answers the answers
+     * @throws InputBlockedException for the first answer that contains a blocked term
+     */
+    public void check(final SlotTable answers) {
+        if (isEmpty())
+            return;
+        for (int ordinal = 0; ordinal < answers.size(); ++ordinal) {
+            final var answer = answers.value(ordinal);
+            if (answer == null)
+                continue;
+            final var match = find(answer);
+            if (match != null)
+                throw new InputBlockedException(answers.slot(ordinal), match.text());
+        }
+    }
+}
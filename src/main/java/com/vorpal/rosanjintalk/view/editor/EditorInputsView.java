@@ -3,35 +3,58 @@ package com.vorpal.rosanjintalk.view.editor;
 // By Sebastian Raaphorst, 2023.
 
 import com.vorpal.rosanjintalk.shared.Shared;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
 import javafx.scene.control.Tooltip;
+import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 
-public final class EditorInputsView extends GridPane {
+/**
+ * The prompt editor: a header above a virtualized list of the rows, each shown by an EditorRowCell.
+ */
+public final class EditorInputsView extends BorderPane {
+    public final ObservableList<EditorRow> rows;
+    public final ListView<EditorRow> rowList;
+
     public EditorInputsView() {
         super();
-        setHgap(Shared.SPACING);
         setPadding(Shared.PADDING);
 
-        final var c0 = new ColumnConstraints();
-        c0.setPercentWidth(10);
-        final var c1 = new ColumnConstraints();
-        c1.setPercentWidth(20);
-        final var c2 = new ColumnConstraints();
-        c2.setPercentWidth(70);
-        getColumnConstraints().addAll(c0, c1, c2);
+        final var header = new GridPane();
+        configureColumns(header);
 
         final var substitutionLabel = new Label("Sub");
         substitutionLabel.setTooltip(new Tooltip("Substitution marker for response in story."));
         substitutionLabel.setAlignment(Pos.CENTER);
-        add(substitutionLabel, 1, 0);
+        header.add(substitutionLabel, 1, 0);
 
         final var promptLabel = new Label("Prompt");
         promptLabel.setTooltip(new Tooltip("Prompt to ask player for substitution marker."));
-        add(promptLabel, 2, 0);
+        header.add(promptLabel, 2, 0);
+        setTop(header);
+
+        rows = FXCollections.observableArrayList();
+        rowList = new ListView<>(rows);
+        setCenter(rowList);
     }
-}
 
+    /**
+     * Set up the columns of the header or of a row, so that they line up.
+     * @param pane the header or row
+     */
+    static void configureColumns(final GridPane pane) {
+        pane.setHgap(Shared.SPACING);
 
+        final var c0 = new ColumnConstraints();
+        c0.setPercentWidth(10);
+        final var c1 = new ColumnConstraints();
+        c1.setPercentWidth(20);
+        final var c2 = new ColumnConstraints();
+        c2.setPercentWidth(70);
+        pane.getColumnConstraints().addAll(c0, c1, c2);
+    }
+}
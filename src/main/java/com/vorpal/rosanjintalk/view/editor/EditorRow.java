@@ -0,0 +1,61 @@
+package com.vorpal.rosanjintalk.view.editor;
+
+// By Sebastian Raaphorst, 2023.
+
+/**
+ * A row of the prompt editor: a substitution index, its prompt, and whether its checkbox is ticked.
+ * The rows only hold data. Controls are created for the visible rows alone, by EditorRowCell.
+ */
+public final class EditorRow {
+    // Number of the last row.
+    private static int rowIdx = 0;
+
+    public final int idx;
+    private String prompt;
+    private boolean checked;
+
+    /**
+     * Used to create a new empty row.
+     */
+    public EditorRow() {
+        this.idx = ++rowIdx;
+        this.prompt = "";
+    }
+
+    /**
+     * Used to create a row from data from a Fluke file.
+     * @param idx    the row's substitution index
+     * @param prompt the row's prompt
+     */
+    public EditorRow(final int idx, final String prompt) {
+        if (idx > rowIdx)
+            rowIdx = idx;
+
+        this.idx = idx;
+        this.prompt = prompt;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public void setPrompt(final String prompt) {
+        this.prompt = prompt;
+    }
+
+    public boolean isChecked() {
+        return checked;
+    }
+
+    public void setChecked(final boolean checked) {
+        this.checked = checked;
+    }
+
+    /**
+     * Reset the index to 0. This is necessary when switching Flukes or the number
+     * will just keep counting up.
+     */
+    public static void resetIndex() {
+        rowIdx = 0;
+    }
+}
@@ -0,0 +1,87 @@
+package com.vorpal.rosanjintalk.view.editor;
+
+// By Sebastian Raaphorst, 2023.
+
+import javafx.beans.binding.Bindings;
+import javafx.geometry.Pos;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.GridPane;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The controls for a row of the prompt editor. The ListView only creates enough cells to fill its height, and reuses
+ * them for whichever rows are scrolled into view, so a Fluke with thousands of prompts does not need thousands of
+ * controls. Edits are written back to the EditorRow shown in the cell.
+ */
+public final class EditorRowCell extends ListCell<EditorRow> {
+    private final GridPane pane = new GridPane();
+    private final CheckBox cb = new CheckBox();
+    private final TextField sub = new TextField();
+    private final TextField prompt = new TextField();
+
+    // Set while the controls are being filled from a row, so that it is not reported as edited.
+    private boolean updating;
+
+    /**
+     * Create a cell for the prompt editor.
+     * @param onPromptEdited called with the row and its previous prompt when its prompt is edited
+     * @param onChecked      called with the row when its checkbox is ticked or unticked
+     */
+    public EditorRowCell(final BiConsumer<EditorRow, String> onPromptEdited,
+                         final Consumer<EditorRow> onChecked) {
+        cb.setFocusTraversable(false);
+        cb.setAlignment(Pos.CENTER_RIGHT);
+
+        sub.setDisable(true);
+        sub.setAlignment(Pos.CENTER);
+        sub.setFocusTraversable(false);
+
+        EditorInputsView.configureColumns(pane);
+        pane.addRow(0, cb, sub, prompt);
+
+        cb.setOnAction(e -> {
+            final var row = getItem();
+            if (row != null) {
+                row.setChecked(cb.isSelected());
+                onChecked.accept(row);
+            }
+        });
+        prompt.textProperty().addListener((observable, oldValue, newValue) -> {
+            final var row = getItem();
+            if (!updating && row != null) {
+                final var previous = row.getPrompt();
+                row.setPrompt(newValue);
+                onPromptEdited.accept(row, previous);
+            }
+        });
+
+        // Stretch the controls across the cell, which would otherwise show them at their preferred width, and do not
+        // let them widen the list so that it scrolls horizontally.
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        setPrefWidth(0);
+        pane.prefWidthProperty().bind(Bindings.createDoubleBinding(
+                () -> getWidth() - snappedLeftInset() - snappedRightInset(),
+                widthProperty(), paddingProperty()));
+    }
+
+    @Override
+    protected void updateItem(final EditorRow row, final boolean empty) {
+        super.updateItem(row, empty);
+        if (empty || row == null) {
+            setGraphic(null);
+            return;
+        }
+
+        updating = true;
+        cb.setSelected(row.isChecked());
+        sub.setText("{" + row.idx + "}");
+        prompt.setText(row.getPrompt());
+        updating = false;
+        setGraphic(pane);
+    }
+}
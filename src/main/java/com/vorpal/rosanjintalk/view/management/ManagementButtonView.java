@@ -6,6 +6,7 @@ import com.vorpal.rosanjintalk.shared.Shared;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.Tooltip;
 import javafx.scene.layout.VBox;
 
@@ -17,6 +18,10 @@ public final class ManagementButtonView extends VBox {
     public final Button deleteButton;
     public final Button fileButton;
 
+    // Shown while a Fluke file is loading.
+    public final ProgressIndicator loadingIndicator;
+    public final Button cancelButton;
+
     private Button createStandardButton(final String name, final String toolTip) {
         final var button = new Button(name);
         button.setTooltip(new Tooltip(toolTip));
@@ -36,6 +41,11 @@ public final class ManagementButtonView extends VBox {
         deleteButton = createStandardButton("Delete", "Delete the selected Fluke file.");
         fileButton = createStandardButton("Files", "Open a file manager to the Fluke file repository.");
 
-        getChildren().addAll(playButton, addButton, newButton, editButton, deleteButton, fileButton);
+        loadingIndicator = new ProgressIndicator();
+        loadingIndicator.setMaxSize(40, 40);
+        cancelButton = createStandardButton("Cancel", "Stop loading the Fluke file.");
+
+        getChildren().addAll(playButton, addButton, newButton, editButton, deleteButton, fileButton,
+                loadingIndicator, cancelButton);
     }
 }
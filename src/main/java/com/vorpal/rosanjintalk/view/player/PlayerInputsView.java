@@ -3,31 +3,62 @@ package com.vorpal.rosanjintalk.view.player;
 // By Sebastian Raaphorst, 2023.
 
 import com.vorpal.rosanjintalk.shared.Shared;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
 import javafx.scene.control.Tooltip;
+import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 
-public final class PlayerInputsView extends GridPane {
+/**
+ * The player form: a header above a virtualized list of the prompts, each shown by a PlayerRowCell.
+ */
+public final class PlayerInputsView extends BorderPane {
+    public final ObservableList<PlayerRow> rows;
+    public final ListView<PlayerRow> rowList;
+
+    // Whether the answers can still be edited.
+    public final BooleanProperty editable;
+
     public PlayerInputsView() {
         super();
-        setHgap(Shared.SPACING);
         setPadding(Shared.PADDING);
 
-        final var c0 = new ColumnConstraints();
-        c0.setPercentWidth(60);
-        final var c1 = new ColumnConstraints();
-        c1.setPercentWidth(40);
-        getColumnConstraints().addAll(c0, c1);
+        final var header = new GridPane();
+        configureColumns(header);
 
         final var promptLabel = new Label("Prompt");
         promptLabel.setTooltip(new Tooltip("Prompt for the Fluke."));
         promptLabel.setAlignment(Pos.CENTER);
-        add(promptLabel, 0, 0);
+        header.add(promptLabel, 0, 0);
 
         final var answerLabel = new Label("Answer");
         answerLabel.setTooltip(new Tooltip("Answer, and not with fleurg."));
-        add(answerLabel, 1, 0);
+        header.add(answerLabel, 1, 0);
+        setTop(header);
+
+        rows = FXCollections.observableArrayList();
+        rowList = new ListView<>(rows);
+        editable = new SimpleBooleanProperty(true);
+        setCenter(rowList);
+    }
+
+    /**
+     * Set up the columns of the header or of a row, so that they line up.
+     * @param pane the header or row
+     */
+    static void configureColumns(final GridPane pane) {
+        pane.setHgap(Shared.SPACING);
+
+        final var c0 = new ColumnConstraints();
+        c0.setPercentWidth(60);
+        final var c1 = new ColumnConstraints();
+        c1.setPercentWidth(40);
+        pane.getColumnConstraints().addAll(c0, c1);
     }
 }
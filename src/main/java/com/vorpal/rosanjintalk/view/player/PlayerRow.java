@@ -0,0 +1,28 @@
+package com.vorpal.rosanjintalk.view.player;
+
+// By Sebastian Raaphorst, 2023.
+
+/**
+ * A row of the player form: a prompt from the Fluke and the answer given to it so far.
+ * The rows only hold data. Controls are created for the visible rows alone, by PlayerRowCell.
+ */
+public final class PlayerRow {
+    // The ordinal of the prompt in the Fluke's inputs.
+    public final int ordinal;
+    public final String prompt;
+    private String answer;
+
+    public PlayerRow(final int ordinal, final String prompt) {
+        this.ordinal = ordinal;
+        this.prompt = prompt;
+        this.answer = "";
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    public void setAnswer(final String answer) {
+        this.answer = answer;
+    }
+}
@@ -0,0 +1,90 @@
+package com.vorpal.rosanjintalk.view.player;
+
+// By Sebastian Raaphorst, 2023.
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.value.ObservableBooleanValue;
+import javafx.geometry.Pos;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.GridPane;
+import javafx.scene.text.TextAlignment;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The controls for a row of the player form. The ListView only creates enough cells to fill its height, and reuses
+ * them for whichever rows are scrolled into view. Answers are written back to the PlayerRow shown in the cell.
+ *
+ * The tooltip that shows the whole prompt is only created when the mouse first enters the prompt of the cell.
+ */
+public final class PlayerRowCell extends ListCell<PlayerRow> {
+    private final GridPane pane = new GridPane();
+    private final Label prompt = new Label();
+    private final TextField answer = new TextField();
+
+    // Set while the controls are being filled from a row, so that it is not reported as edited.
+    private boolean updating;
+
+    /**
+     * Create a cell for the player form.
+     * @param editable       whether the answers can be edited
+     * @param onAnswerEdited called with the row and its previous answer when its answer is edited
+     */
+    public PlayerRowCell(final ObservableBooleanValue editable,
+                         final BiConsumer<PlayerRow, String> onAnswerEdited) {
+        prompt.setTextAlignment(TextAlignment.RIGHT);
+        prompt.setAlignment(Pos.CENTER_LEFT);
+        prompt.addEventHandler(MouseEvent.MOUSE_ENTERED, e -> {
+            final var row = getItem();
+            if (row == null)
+                return;
+            if (prompt.getTooltip() == null)
+                prompt.setTooltip(new Tooltip());
+            prompt.getTooltip().setText(row.prompt);
+        });
+
+        answer.setAlignment(Pos.CENTER_LEFT);
+        answer.editableProperty().bind(editable);
+        answer.textProperty().addListener((observable, oldValue, newValue) -> {
+            final var row = getItem();
+            if (!updating && row != null) {
+                final var previous = row.getAnswer();
+                row.setAnswer(newValue);
+                onAnswerEdited.accept(row, previous);
+            }
+        });
+
+        PlayerInputsView.configureColumns(pane);
+        pane.addRow(0, prompt, answer);
+
+        // Stretch the controls across the cell, which would otherwise show them at their preferred width, and do not
+        // let them widen the list so that it scrolls horizontally.
+        setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+        setPrefWidth(0);
+        pane.prefWidthProperty().bind(Bindings.createDoubleBinding(
+                () -> getWidth() - snappedLeftInset() - snappedRightInset(),
+                widthProperty(), paddingProperty()));
+    }
+
+    @Override
+    protected void updateItem(final PlayerRow row, final boolean empty) {
+        super.updateItem(row, empty);
+        if (empty || row == null) {
+            setGraphic(null);
+            return;
+        }
+
+        updating = true;
+        prompt.setText(row.prompt);
+        if (prompt.getTooltip() != null)
+            prompt.getTooltip().setText(row.prompt);
+        answer.setText(row.getAnswer());
+        updating = false;
+        setGraphic(pane);
+    }
+}
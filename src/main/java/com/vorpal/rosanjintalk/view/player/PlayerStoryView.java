@@ -0,0 +1,100 @@
+package com.vorpal.rosanjintalk.view.player;
+
+// By Sebastian Raaphorst, 2023.
+
+import com.vorpal.rosanjintalk.model.PageWriter;
+import com.vorpal.rosanjintalk.shared.Shared;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * The read-only view of a rendered story: its title, and its pages in a ListView, which only lays out and renders
+ * the pages that are visible. This replaces the TextArea of the StoryView, which lays out the whole text.
+ * Unlike the TextArea, it does not allow part of the story to be selected: the whole story is copied or saved instead.
+ */
+public final class PlayerStoryView extends BorderPane {
+    public final TextField title;
+    public final ObservableList<PageWriter.Page> pages;
+    public final ListView<PageWriter.Page> pageList;
+
+    public PlayerStoryView() {
+        super();
+        setPadding(Shared.PADDING);
+        setMargin(this, Shared.PADDING);
+
+        title = new TextField();
+        title.setEditable(false);
+        title.setFocusTraversable(false);
+
+        final var titleLabel = new Label("Title:");
+        titleLabel.setLabelFor(title);
+        titleLabel.setAlignment(Pos.CENTER_LEFT);
+        titleLabel.setTextAlignment(TextAlignment.LEFT);
+
+        final var titlePane = new BorderPane();
+        titlePane.setLeft(titleLabel);
+        titlePane.setCenter(title);
+        BorderPane.setMargin(titleLabel, new Insets(Shared.SPACING, Shared.SPACING, Shared.SPACING, 0));
+        BorderPane.setAlignment(titleLabel, Pos.CENTER_LEFT);
+        BorderPane.setAlignment(title, Pos.CENTER_LEFT);
+        titlePane.prefWidthProperty().bind(widthProperty());
+        setTop(titlePane);
+
+        pages = FXCollections.observableArrayList();
+        pageList = new ListView<>(pages);
+        pageList.setFocusTraversable(false);
+        pageList.setCellFactory(list -> new PageCell());
+        setCenter(pageList);
+    }
+
+    /**
+     * Shows a page as wrapped text. The pages that a long line was broken into have no padding between them and no
+     * background of their own, so that they read as one paragraph, and only whole lines are separated.
+     */
+    private static final class PageCell extends ListCell<PageWriter.Page> {
+        // The padding of a list cell, above the first page and below the last page of a line.
+        private static final double VERTICAL_PADDING = 3;
+        private static final double HORIZONTAL_PADDING = 7;
+
+        PageCell() {
+            setWrapText(true);
+            setBackground(Background.EMPTY);
+
+            // Wrap to the width of the list rather than widening it so that it scrolls horizontally.
+            setPrefWidth(0);
+        }
+
+        @Override
+        protected void updateItem(final PageWriter.Page page, final boolean empty) {
+            super.updateItem(page, empty);
+            if (empty || page == null) {
+                setText(null);
+                return;
+            }
+            setText(page.text());
+
+            // The page continues a line if the page before it did not end it.
+            final var index = getIndex();
+            final var continuesLine = index > 0 && !getListView().getItems().get(index - 1).endsLine();
+            setPadding(new Insets(continuesLine ? 0 : VERTICAL_PADDING,
+                    HORIZONTAL_PADDING,
+                    page.endsLine() ? VERTICAL_PADDING : 0,
+                    HORIZONTAL_PADDING));
+        }
+
+        // A page is never shown as selected, since the story is only read.
+        @Override
+        public void updateSelected(final boolean selected) {
+            super.updateSelected(false);
+        }
+    }
+}
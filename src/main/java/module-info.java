@@ -1,7 +1,7 @@
 module com.vorpal.rosanjintalk {
     requires javafx.controls;
     requires javafx.fxml;
-    requires com.fasterxml.jackson.databind;
+    requires com.fasterxml.jackson.core;
     requires java.desktop;
 
     exports com.vorpal.rosanjintalk.model;
@@ -14,6 +14,7 @@ module com.vorpal.rosanjintalk {
     exports com.vorpal.rosanjintalk.controller.management;
     opens com.vorpal.rosanjintalk.controller.management to javafx.fxml;
     exports com.vorpal.rosanjintalk.shared;
+    exports com.vorpal.rosanjintalk.cli;
+    exports com.vorpal.rosanjintalk.library;
     opens com.vorpal.rosanjintalk.shared to javafx.fxml;
-    opens com.vorpal.rosanjintalk.model to com.fasterxml.jackson.databind;
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlukeTest {
+    private static final SlotTable INPUTS = SlotTable.of(new int[]{1, 2}, new String[]{"A noun", "A verb"});
+
+    @Test
+    void rejectsOverflowInTitle() {
+        final var ex = assertThrows(RuntimeException.class,
+                () -> new Fluke("overflow.fluke", "The {99999999999}", INPUTS, "A {1} can {2}."));
+        assertTrue(ex.getMessage().contains("{99999999999}"));
+        assertTrue(ex.getMessage().contains("title"));
+    }
+
+    @Test
+    void rejectsOverflowInStory() {
+        final var ex = assertThrows(RuntimeException.class,
+                () -> new Fluke("overflow.fluke", "The {1}", INPUTS, "A {1} can {99999999999}."));
+        assertTrue(ex.getMessage().contains("{99999999999}"));
+    }
+
+    @Test
+    void rejectsOverflowInCompiledTitle() {
+        assertThrows(RuntimeException.class, () -> Fluke.of("overflow.fluke",
+                Template.compile("The {99999999999}"), INPUTS, Template.compile("A {1} can {2}.")));
+    }
+
+    @Test
+    void substitutesTitleAndStory() {
+        final var fluke = new Fluke("valid.fluke", "The {1}", INPUTS, "A {1} can {2}.");
+        final var answers = INPUTS.withValues(new String[]{" cat ", "sing"});
+        assertEquals("The cat", fluke.substituteTitle(answers));
+        assertEquals("A cat can sing.", fluke.substituteStory(answers));
+    }
+}
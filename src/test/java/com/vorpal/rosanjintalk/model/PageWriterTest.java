@@ -0,0 +1,39 @@
+package com.vorpal.rosanjintalk.model;
+
+// By Sebastian Raaphorst, 2023.
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PageWriterTest {
+    private static List<PageWriter.Page> pages(final int pageLength, final String text) throws IOException {
+        final var pages = new ArrayList<PageWriter.Page>();
+        try (final var writer = new PageWriter(pageLength, 2, pages::addAll)) {
+            writer.write(text);
+        }
+        return pages;
+    }
+
+    @Test
+    void breaksLongLinesAfterWhitespace() throws IOException {
+        assertEquals(List.of(
+                new PageWriter.Page("one two ", false),
+                new PageWriter.Page("three", true),
+                new PageWriter.Page("four", false)),
+                pages(8, "one two three\r\nfour"));
+    }
+
+    @Test
+    void doesNotSplitSurrogatePairs() throws IOException {
+        assertEquals(List.of(
+                new PageWriter.Page("abc", false),
+                new PageWriter.Page("😀de", false),
+                new PageWriter.Page("f", false)),
+                pages(4, "abc😀def"));
+    }
+}